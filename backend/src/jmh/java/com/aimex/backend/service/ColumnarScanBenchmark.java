@@ -0,0 +1,79 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Category breakdown and weekly trend over one user's history: columnar scans against streaming boxed Expense objects.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarScanBenchmark {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 12, 31);
+
+    @Param({"1000", "10000", "100000"})
+    int expenses;
+
+    private List<Expense> data;
+    private ExpenseColumns columns;
+    private int[] weeks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = SyntheticData.expenses(expenses, 12, 11);
+        columns = new ExpenseColumns(0, expenses);
+        for (Expense expense : data) {
+            expense.setId(new ObjectId().toHexString());
+            columns.append(expense);
+        }
+
+        weeks = new int[53];
+        for (int w = 0; w < weeks.length; w++) {
+            weeks[w] = (int) FROM.plusWeeks(w).toEpochDay();
+        }
+    }
+
+    @Benchmark
+    public long[] breakdownColumnar() {
+        long[] totals = new long[columns.categoryCount()];
+        long[] counts = new long[columns.categoryCount()];
+        columns.sumByCategory((int) FROM.toEpochDay(), (int) TO.toEpochDay(), false, totals, counts);
+        return totals;
+    }
+
+    @Benchmark
+    public Map<String, Double> breakdownStreaming() {
+        return data.stream()
+                .filter(expense -> !expense.getDate().isBefore(FROM) && !expense.getDate().isAfter(TO))
+                .collect(Collectors.groupingBy(Expense::getCategoryId, Collectors.summingDouble(Expense::getAmount)));
+    }
+
+    @Benchmark
+    public long[] weeklyTrendColumnar() {
+        long[] totals = new long[weeks.length - 1];
+        columns.sumByPeriod(weeks, totals);
+        return totals;
+    }
+}
@@ -0,0 +1,92 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Prompt construction and response parsing around a Gemini call; the network is not involved.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBenchmark {
+
+    private static final int BATCH_SIZE = 25;
+
+    @Param({"5", "50", "200"})
+    int categories;
+
+    private AiCategorizationService service;
+    private CategorySnapshot snapshot;
+    private Expense expense;
+    private List<Expense> batch;
+    private String singleResponse;
+    private String batchResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        // the collaborators are only needed for calls, which these benchmarks never make
+        service = new AiCategorizationService(null, null, null, new SimpleMeterRegistry(), BATCH_SIZE);
+        snapshot = CategorySnapshot.of(1, SyntheticData.categories(categories));
+        batch = SyntheticData.expenses(BATCH_SIZE, categories, 3);
+        expense = batch.getFirst();
+
+        String lastCategory = "Category " + (categories - 1);
+        singleResponse = envelope("{\"categoryName\": \"%s\", \"confidence\": 0.9, \"reason\": \"bench\"}"
+                .formatted(lastCategory));
+
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            items.add("{\"index\": %d, \"categoryName\": \"Category %d\", \"confidence\": 0.8, \"reason\": \"bench\"}"
+                    .formatted(i, i % categories));
+        }
+        batchResponse = envelope("[" + String.join(",", items) + "]");
+    }
+
+    private static String envelope(String text) throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", text)))))));
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return service.buildPrompt(expense, snapshot);
+    }
+
+    @Benchmark
+    public String buildBatchPrompt() {
+        return service.buildBatchPrompt(batch, snapshot);
+    }
+
+    @Benchmark
+    public Optional<AiCategorySuggestion> parseResponse() {
+        return service.parseResponse(singleResponse, snapshot);
+    }
+
+    @Benchmark
+    public Map<Integer, Optional<AiCategorySuggestion>> parseBatchResponse() throws JsonProcessingException {
+        return service.parseBatchResponse(batchResponse, BATCH_SIZE, snapshot);
+    }
+}
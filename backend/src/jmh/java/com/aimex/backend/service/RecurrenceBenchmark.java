@@ -0,0 +1,59 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.MerchantRecurrence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Replays a user's history through the recurrence state machine, as the backfill job does.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecurrenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int expenses;
+
+    private List<Expense> history;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        history = SyntheticData.expenses(expenses, 20, 42).stream()
+                .sorted(Comparator.comparing(Expense::getDate))
+                .toList();
+    }
+
+    @Benchmark
+    public int replayHistory() {
+        Map<String, MerchantRecurrence> states = new HashMap<>();
+        int recurring = 0;
+        for (Expense expense : history) {
+            MerchantRecurrence state = states.computeIfAbsent(expense.getMerchant(),
+                    merchant -> RecurrenceEngine.newState(SyntheticData.USER_ID, merchant));
+            RecurrenceEngine.add(state, expense);
+            if (RecurrenceEngine.isRecurring(state, expense)) {
+                recurring++;
+            }
+        }
+        return recurring;
+    }
+}
@@ -0,0 +1,48 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.ExpenseRollup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Folding expenses into (month, category) totals, the in-memory grouping behind rollups and bulk imports.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollupFoldBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int expenses;
+
+    @Param({"5", "50", "200"})
+    int categories;
+
+    private List<Expense> data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = SyntheticData.expenses(expenses, categories, 7);
+    }
+
+    @Benchmark
+    public Map<String, ExpenseRollup> foldDeltas() {
+        return ExpenseRollupService.foldDeltas(data);
+    }
+}
@@ -0,0 +1,57 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Category;
+import com.aimex.backend.models.Expense;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded generators for benchmark inputs: a spread of merchants where roughly one in ten bills
+ * on a monthly cadence, amounts in the tens to thousands, and dates over the last three years.
+ */
+final class SyntheticData {
+
+    static final String USER_ID = "bench-user";
+
+    private SyntheticData() {
+    }
+
+    static List<Category> categories(int count) {
+        List<Category> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Category category = new Category();
+            category.setId("cat-" + i);
+            category.setUserId(USER_ID);
+            category.setName("Category " + i);
+            categories.add(category);
+        }
+        return categories;
+    }
+
+    static List<Expense> expenses(int count, int categoryCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int merchants = Math.max(10, count / 50);
+        LocalDate start = LocalDate.of(2023, 1, 1);
+
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int merchant = random.nextInt(merchants);
+            boolean subscription = merchant % 10 == 0;
+
+            Expense expense = new Expense();
+            expense.setId(Integer.toHexString(i));
+            expense.setUserId(USER_ID);
+            expense.setMerchant("Merchant " + merchant);
+            expense.setCategoryId("cat-" + (merchant % categoryCount));
+            expense.setAmount(subscription ? 499.0 + merchant % 7 : 20 + random.nextDouble(5_000));
+            expense.setDate(subscription
+                    ? start.plusMonths(random.nextInt(36)).withDayOfMonth(1 + merchant % 28)
+                    : start.plusDays(random.nextInt(3 * 365)));
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+}
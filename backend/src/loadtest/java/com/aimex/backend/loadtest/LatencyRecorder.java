@@ -0,0 +1,50 @@
+package com.aimex.backend.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every latency sample for one endpoint so percentiles are exact rather than bucketed.
+ * A minute-long run at a few thousand requests per second is a few megabytes of longs.
+ */
+final class LatencyRecorder {
+
+    private final String endpoint;
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    LatencyRecorder(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    synchronized void record(long latencyNanos, boolean ok) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = latencyNanos;
+        if (!ok) {
+            errors++;
+        }
+    }
+
+    synchronized LoadTestReport.EndpointStats summarize(double measuredSeconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new LoadTestReport.EndpointStats(endpoint, count, errors, count / measuredSeconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), count == 0 ? 0 : millis(sorted[count - 1]));
+    }
+
+    // nearest-rank percentile, in milliseconds
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return millis(sorted[Math.clamp(rank - 1, 0, sorted.length - 1)]);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
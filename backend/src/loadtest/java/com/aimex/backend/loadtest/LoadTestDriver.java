@@ -0,0 +1,300 @@
+package com.aimex.backend.loadtest;
+
+import com.aimex.backend.service.dto.AuthRequest;
+import com.aimex.backend.service.dto.AuthResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a weighted request mix against the real controllers over HTTP, as the seeded users.
+ * Workers are virtual threads. With {@code target-rate} set, requests are issued on a fixed
+ * schedule shared by all workers (open loop) and latency is measured from the scheduled start, so
+ * a stalled server shows up as latency instead of silently lowering the offered load.
+ * With {@code target-rate=0} every worker sends its next request as soon as the last one returns.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestDriver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestDriver.class);
+
+    private final ObjectMapper objectMapper;
+    private final Duration duration;
+    private final Duration warmUp;
+    private final int concurrency;
+    private final double targetRate;
+    private final String mixSpec;
+    private final WorkloadMix mix;
+    private final int bulkSize;
+    private final double uncategorizedRatio;
+    private final long seed;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    public LoadTestDriver(ObjectMapper objectMapper,
+                          @Value("${aimex.loadtest.duration:60s}") Duration duration,
+                          @Value("${aimex.loadtest.warmup:10s}") Duration warmUp,
+                          @Value("${aimex.loadtest.concurrency:32}") int concurrency,
+                          @Value("${aimex.loadtest.target-rate:0}") double targetRate,
+                          @Value("${aimex.loadtest.mix:login=5,create-expense=30,bulk-import=5,dashboard=30,analytics-panels=10,budget-alerts=20}") String mixSpec,
+                          @Value("${aimex.loadtest.bulk-size:50}") int bulkSize,
+                          @Value("${aimex.loadtest.uncategorized-ratio:0.5}") double uncategorizedRatio,
+                          @Value("${aimex.loadtest.random-seed:42}") long seed) {
+        this.objectMapper = objectMapper;
+        this.duration = duration;
+        this.warmUp = warmUp;
+        this.concurrency = Math.max(1, concurrency);
+        this.targetRate = Math.max(0, targetRate);
+        this.mixSpec = mixSpec;
+        this.mix = WorkloadMix.parse(mixSpec);
+        this.bulkSize = Math.max(1, bulkSize);
+        this.uncategorizedRatio = uncategorizedRatio;
+        this.seed = seed;
+    }
+
+    public LoadTestReport run(String baseUrl, int users) throws InterruptedException {
+        List<Session> sessions = openSessions(baseUrl, users);
+        if (sessions.isEmpty()) {
+            throw new IllegalStateException("No load-test user could log in at " + baseUrl + "; seed the database first");
+        }
+
+        Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+        AtomicLong tickets = new AtomicLong();
+        long intervalNanos = targetRate > 0 ? (long) (1_000_000_000L / targetRate) : 0;
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long measureFrom = start + warmUp.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        LOG.info("Replaying [{}] as {} users with {} workers for {} s after {} s warm-up",
+                mixSpec, sessions.size(), concurrency, duration.toSeconds(), warmUp.toSeconds());
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                SplittableRandom random = new SplittableRandom(seed * 31 + w);
+                workers.submit(() -> work(baseUrl, sessions, random, recorders, tickets, intervalNanos, start, measureFrom, end));
+            }
+        }
+        double measuredSeconds = Math.max(1e-9, (System.nanoTime() - measureFrom) / 1e9);
+
+        List<LoadTestReport.EndpointStats> endpoints = recorders.values().stream()
+                .map(recorder -> recorder.summarize(measuredSeconds))
+                .sorted(Comparator.comparing(LoadTestReport.EndpointStats::endpoint))
+                .toList();
+        long requests = endpoints.stream().mapToLong(LoadTestReport.EndpointStats::requests).sum();
+        long errors = endpoints.stream().mapToLong(LoadTestReport.EndpointStats::errors).sum();
+        return new LoadTestReport(startedAt, sessions.size(), concurrency, targetRate, mixSpec, measuredSeconds,
+                requests, errors, requests / measuredSeconds, endpoints);
+    }
+
+    private void work(String baseUrl, List<Session> sessions, SplittableRandom random,
+                      Map<String, LatencyRecorder> recorders, AtomicLong tickets, long intervalNanos,
+                      long start, long measureFrom, long end) {
+        while (true) {
+            long scheduled = intervalNanos > 0 ? start + tickets.getAndIncrement() * intervalNanos : System.nanoTime();
+            if (scheduled >= end) {
+                return;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            Session session = sessions.get(random.nextInt(sessions.size()));
+            Recording recording = new Recording(recorders, scheduled >= measureFrom);
+            try {
+                issue(mix.pick(random), baseUrl, session, random, recording, scheduled);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void issue(WorkloadMix.Operation operation, String baseUrl, Session session, SplittableRandom random,
+                       Recording recording, long scheduled) throws InterruptedException {
+        String user = baseUrl + "/aimex/" + session.userId;
+        switch (operation) {
+            case LOGIN -> {
+                HttpResponse<String> response = send(recording, "POST /auth/login", scheduled,
+                        post(baseUrl + "/auth/login", null, new AuthRequest(session.email, LoadTestSeeder.PASSWORD)));
+                if (response != null && response.statusCode() == 200) {
+                    try {
+                        session.token = read(response.body(), AuthResponse.class).token();
+                    } catch (IOException ex) {
+                        LOG.debug("Unreadable login response for {}: {}", session.email, ex.getMessage());
+                    }
+                }
+            }
+            case CREATE_EXPENSE -> send(recording, "POST /aimex/{userId}/expenses", scheduled,
+                    post(user + "/expenses", session.token, expense(session, random)));
+            case BULK_IMPORT -> {
+                List<Map<String, Object>> expenses = new ArrayList<>(bulkSize);
+                for (int i = 0; i < bulkSize; i++) {
+                    expenses.add(expense(session, random));
+                }
+                send(recording, "POST /aimex/{userId}/expenses/bulk", scheduled,
+                        post(user + "/expenses/bulk", session.token, expenses));
+            }
+            case DASHBOARD -> send(recording, "GET /aimex/analytics/{userId}/dashboard", scheduled,
+                    get(baseUrl + "/aimex/analytics/" + session.userId + "/dashboard?granularity=month&periods=12",
+                            session.token));
+            case ANALYTICS_PANELS -> {
+                // the same view loaded panel by panel, as clients did before the combined endpoint
+                String analytics = baseUrl + "/aimex/analytics/" + session.userId;
+                send(recording, "GET /aimex/analytics/{userId}/monthly", scheduled,
+                        get(analytics + "/monthly", session.token));
+                send(recording, "GET /aimex/analytics/{userId}/category", System.nanoTime(),
+                        get(analytics + "/category", session.token));
+                send(recording, "GET /aimex/analytics/{userId}/trends", System.nanoTime(),
+                        get(analytics + "/trends?granularity=month&periods=12", session.token));
+            }
+            case BUDGET_ALERTS -> send(recording, "GET /aimex/{userId}/budgets/alerts", scheduled,
+                    get(user + "/budgets/alerts", session.token));
+        }
+    }
+
+    private Map<String, Object> expense(Session session, SplittableRandom random) {
+        SyntheticCatalog.CategoryProfile profile = SyntheticCatalog.CATEGORIES.get(
+                SyntheticCatalog.pickCategory(random, SyntheticCatalog.CATEGORIES.size()));
+        Map<String, Object> expense = new LinkedHashMap<>();
+        expense.put("merchant", profile.pickMerchant(random));
+        expense.put("amount", profile.sampleAmount(random));
+        expense.put("date", LocalDate.now().minusDays(random.nextInt(7)).toString());
+        expense.put("paymentMethod", SyntheticCatalog.PAYMENT_METHODS.get(random.nextInt(SyntheticCatalog.PAYMENT_METHODS.size())));
+        // the rest go through AI categorization against the stub
+        if (random.nextDouble() >= uncategorizedRatio) {
+            expense.put("categoryId", session.categoryIds.get(profile.name()));
+        }
+        return expense;
+    }
+
+    private HttpResponse<String> send(Recording recording, String endpoint, long scheduled, HttpRequest request)
+            throws InterruptedException {
+        HttpResponse<String> response = null;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException ex) {
+            LOG.debug("{} failed: {}", endpoint, ex.getMessage());
+        }
+        if (recording.measured()) {
+            boolean ok = response != null && response.statusCode() / 100 == 2;
+            recording.recorders().computeIfAbsent(endpoint, LatencyRecorder::new)
+                    .record(System.nanoTime() - scheduled, ok);
+        }
+        return response;
+    }
+
+    // logs every seeded user in once and learns their ids; not part of the measured run
+    private List<Session> openSessions(String baseUrl, int users) throws InterruptedException {
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String email = LoadTestSeeder.email(i);
+            try {
+                HttpResponse<String> login = httpClient.send(
+                        post(baseUrl + "/auth/login", null, new AuthRequest(email, LoadTestSeeder.PASSWORD)),
+                        HttpResponse.BodyHandlers.ofString());
+                if (login.statusCode() != 200) {
+                    LOG.warn("Load-test user {} could not log in ({}); skipping", email, login.statusCode());
+                    continue;
+                }
+                AuthResponse auth = read(login.body(), AuthResponse.class);
+
+                HttpResponse<String> categories = httpClient.send(
+                        get(baseUrl + "/aimex/" + auth.userId() + "/categories", auth.token()),
+                        HttpResponse.BodyHandlers.ofString());
+                Map<String, String> categoryIds = new HashMap<>();
+                for (Map<String, Object> category : read(categories.body(), new TypeReference<List<Map<String, Object>>>() { })) {
+                    categoryIds.put((String) category.get("name"), (String) category.get("id"));
+                }
+
+                sessions.add(new Session(email, auth.userId(), auth.token(), categoryIds));
+            } catch (IOException ex) {
+                LOG.warn("Load-test user {} could not log in: {}", email, ex.getMessage());
+            }
+        }
+        return sessions;
+    }
+
+    private HttpRequest post(String url, String token, Object body) {
+        try {
+            return request(url, token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not serialize load-test request body", ex);
+        }
+    }
+
+    private HttpRequest get(String url, String token) {
+        return request(url, token).GET().build();
+    }
+
+    private static HttpRequest.Builder request(String url, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private <T> T read(String body, Class<T> type) throws IOException {
+        return objectMapper.readValue(body, type);
+    }
+
+    private <T> T read(String body, TypeReference<T> type) throws IOException {
+        return objectMapper.readValue(body, type);
+    }
+
+    private record Recording(Map<String, LatencyRecorder> recorders, boolean measured) {
+    }
+
+    private static final class Session {
+        private final String email;
+        private final String userId;
+        private final Map<String, String> categoryIds;
+        private volatile String token;
+
+        private Session(String email, String userId, String token, Map<String, String> categoryIds) {
+            this.email = email;
+            this.userId = userId;
+            this.token = token;
+            this.categoryIds = categoryIds;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.aimex.backend.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.Profiles;
+
+import java.util.Map;
+
+/**
+ * Under the {@code loadtest} profile, points the Gemini client at {@link LoadTestGeminiStub} with
+ * the highest precedence, so a load test can never spend real quota whatever else is configured.
+ */
+public class LoadTestEnvironment implements EnvironmentPostProcessor {
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.acceptsProfiles(Profiles.of("loadtest"))) {
+            return;
+        }
+        String port = environment.getProperty("aimex.loadtest.gemini.port", "18089");
+        environment.getPropertySources().addFirst(new MapPropertySource("loadtest", Map.of(
+                "gemini.api.base-url", "http://127.0.0.1:" + port + "/v1beta",
+                "gemini.api.key", "loadtest")));
+    }
+}
@@ -0,0 +1,122 @@
+package com.aimex.backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the Gemini {@code generateContent} endpoint, so load tests never spend
+ * quota. {@link LoadTestEnvironment} points {@code gemini.api.base-url} here. Answers pick one
+ * of the offered categories per transaction, after a configurable latency that mimics the model.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestGeminiStub {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestGeminiStub.class);
+
+    private static final Pattern CATEGORIES = Pattern.compile("Available Categories: \\[(.*)]");
+    private static final Pattern BATCH_ROW = Pattern.compile("(?m)^\\s*(\\d+)\\. Amount:");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final Duration latency;
+
+    public LoadTestGeminiStub(@Value("${aimex.loadtest.gemini.port:18089}") int port,
+                              @Value("${aimex.loadtest.gemini.latency:300ms}") Duration latency) throws IOException {
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        LOG.info("Stub Gemini listening on 127.0.0.1:{} with {} ms latency", port, latency.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String prompt = request.path("contents").path(0).path("parts").path(0).path("text").asText();
+
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Map<String, Object> envelope = Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", answer(prompt)))))
+        ));
+        byte[] body = objectMapper.writeValueAsBytes(envelope);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String answer(String prompt) throws IOException {
+        List<String> categories = categories(prompt);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        Matcher rows = BATCH_ROW.matcher(prompt);
+        if (!rows.find()) {
+            return objectMapper.writeValueAsString(suggestion(null, categories, random));
+        }
+
+        List<Map<String, Object>> answers = new ArrayList<>();
+        do {
+            answers.add(suggestion(Integer.parseInt(rows.group(1)), categories, random));
+        } while (rows.find());
+        return objectMapper.writeValueAsString(answers);
+    }
+
+    private static Map<String, Object> suggestion(Integer index, List<String> categories, ThreadLocalRandom random) {
+        String category = categories.isEmpty() ? "Uncategorized" : categories.get(random.nextInt(categories.size()));
+        Map<String, Object> suggestion = new LinkedHashMap<>();
+        if (index != null) {
+            suggestion.put("index", index);
+        }
+        suggestion.put("categoryName", category);
+        suggestion.put("confidence", 0.5 + random.nextDouble() * 0.5);
+        suggestion.put("reason", "load test");
+        return suggestion;
+    }
+
+    private static List<String> categories(String prompt) {
+        Matcher matcher = CATEGORIES.matcher(prompt);
+        if (!matcher.find() || matcher.group(1).isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(matcher.group(1).split(","))
+                .map(String::trim)
+                .toList();
+    }
+}
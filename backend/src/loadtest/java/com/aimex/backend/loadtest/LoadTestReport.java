@@ -0,0 +1,42 @@
+package com.aimex.backend.loadtest;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of one replay run: per-endpoint throughput and latency percentiles over the measured
+ * window (warm-up excluded). Latency is taken from each request's scheduled start, so queueing
+ * behind a slow server counts against it when a target rate is set.
+ */
+public record LoadTestReport(Instant startedAt,
+                             int users,
+                             int concurrency,
+                             double targetRate,
+                             String mix,
+                             double measuredSeconds,
+                             long requests,
+                             long errors,
+                             double throughput,
+                             List<EndpointStats> endpoints) {
+
+    public record EndpointStats(String endpoint, long requests, long errors, double throughput,
+                                double p50Millis, double p90Millis, double p95Millis, double p99Millis,
+                                double maxMillis) {
+    }
+
+    public String format() {
+        StringBuilder table = new StringBuilder();
+        table.append("%nLoad test: %d users, %d workers, %s, %.1f s measured%n".formatted(
+                users, concurrency, targetRate > 0 ? "%.0f req/s target".formatted(targetRate) : "closed loop",
+                measuredSeconds));
+        table.append("%-42s %9s %7s %9s %9s %9s %9s %9s %9s%n".formatted(
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p95 ms", "p99 ms", "max ms"));
+        for (EndpointStats stats : endpoints) {
+            table.append("%-42s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n".formatted(
+                    stats.endpoint(), stats.requests(), stats.errors(), stats.throughput(),
+                    stats.p50Millis(), stats.p90Millis(), stats.p95Millis(), stats.p99Millis(), stats.maxMillis()));
+        }
+        table.append("%-42s %9d %7d %9.1f%n".formatted("total", requests, errors, throughput));
+        return table.toString();
+    }
+}
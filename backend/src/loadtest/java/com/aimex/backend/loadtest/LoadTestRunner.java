@@ -0,0 +1,93 @@
+package com.aimex.backend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Entry point of the {@code loadtest} profile: once the app (and its web server) is up, seed the
+ * synthetic users, replay the request mix against this instance, or against
+ * {@code aimex.loadtest.target-url} when set, then log the report and optionally write it as JSON.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    private final LoadTestSeeder seeder;
+    private final LoadTestDriver driver;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext context;
+    private final boolean seed;
+    private final boolean replay;
+    private final String targetUrl;
+    private final String reportFile;
+    private final boolean exitWhenDone;
+
+    public LoadTestRunner(LoadTestSeeder seeder,
+                          LoadTestDriver driver,
+                          ObjectMapper objectMapper,
+                          ConfigurableApplicationContext context,
+                          @Value("${aimex.loadtest.seed.enabled:true}") boolean seed,
+                          @Value("${aimex.loadtest.replay.enabled:true}") boolean replay,
+                          @Value("${aimex.loadtest.target-url:}") String targetUrl,
+                          @Value("${aimex.loadtest.report-file:}") String reportFile,
+                          @Value("${aimex.loadtest.exit-when-done:true}") boolean exitWhenDone) {
+        this.seeder = seeder;
+        this.driver = driver;
+        this.objectMapper = objectMapper;
+        this.context = context;
+        this.seed = seed;
+        this.replay = replay;
+        this.targetUrl = targetUrl;
+        this.reportFile = reportFile;
+        this.exitWhenDone = exitWhenDone;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        int exitCode = 0;
+        try {
+            if (seed) {
+                seeder.seed();
+            }
+            if (replay) {
+                LoadTestReport report = driver.run(baseUrl(), seeder.users());
+                LOG.info(report.format());
+                if (!reportFile.isBlank()) {
+                    objectMapper.writerWithDefaultPrettyPrinter().writeValue(Path.of(reportFile).toFile(), report);
+                    LOG.info("Load-test report written to {}", reportFile);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exitCode = 1;
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Load test failed: {}", ex.getMessage(), ex);
+            exitCode = 1;
+        }
+
+        if (exitWhenDone) {
+            int status = exitCode;
+            System.exit(SpringApplication.exit(context, () -> status));
+        }
+    }
+
+    private String baseUrl() {
+        if (!targetUrl.isBlank()) {
+            return targetUrl.endsWith("/") ? targetUrl.substring(0, targetUrl.length() - 1) : targetUrl;
+        }
+        return "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port", "8080");
+    }
+}
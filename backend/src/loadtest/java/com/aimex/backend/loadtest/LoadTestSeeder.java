@@ -0,0 +1,211 @@
+package com.aimex.backend.loadtest;
+
+import com.aimex.backend.models.Budget;
+import com.aimex.backend.models.Category;
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.User;
+import com.aimex.backend.repository.UserRepository;
+import com.aimex.backend.service.ExpenseRollupService;
+import com.aimex.backend.service.RecurrenceEngine;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Creates the synthetic users the replay driver logs in as. Each user gets a category set, monthly
+ * budgets and months of expense history (including fixed-amount subscriptions so recurrence
+ * detection has something to find), all written with unordered bulk inserts. Rollups and
+ * recurrence state are maintained the same way the ingestion path does it.
+ * Users that already exist are left untouched, so a seeded database can be reused across runs.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestSeeder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestSeeder.class);
+
+    static final String PASSWORD = "loadtest-password";
+
+    private final UserRepository userRepository;
+    private final MongoTemplate mongoTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ExpenseRollupService rollupService;
+    private final RecurrenceEngine recurrenceEngine;
+
+    private final int users;
+    private final int categoriesPerUser;
+    private final int historyMonths;
+    private final int expensesPerMonth;
+    private final int budgetMonths;
+    private final int batchSize;
+    private final long seed;
+
+    public LoadTestSeeder(UserRepository userRepository,
+                          MongoTemplate mongoTemplate,
+                          PasswordEncoder passwordEncoder,
+                          ExpenseRollupService rollupService,
+                          RecurrenceEngine recurrenceEngine,
+                          @Value("${aimex.loadtest.users:50}") int users,
+                          @Value("${aimex.loadtest.seed.categories-per-user:8}") int categoriesPerUser,
+                          @Value("${aimex.loadtest.seed.history-months:24}") int historyMonths,
+                          @Value("${aimex.loadtest.seed.expenses-per-month:60}") int expensesPerMonth,
+                          @Value("${aimex.loadtest.seed.budget-months:3}") int budgetMonths,
+                          @Value("${aimex.loadtest.seed.batch-size:1000}") int batchSize,
+                          @Value("${aimex.loadtest.random-seed:42}") long seed) {
+        this.userRepository = userRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.rollupService = rollupService;
+        this.recurrenceEngine = recurrenceEngine;
+        this.users = users;
+        this.categoriesPerUser = Math.clamp(categoriesPerUser, 1, SyntheticCatalog.CATEGORIES.size());
+        this.historyMonths = Math.max(1, historyMonths);
+        this.expensesPerMonth = Math.max(0, expensesPerMonth);
+        this.budgetMonths = Math.max(0, budgetMonths);
+        this.batchSize = Math.max(1, batchSize);
+        this.seed = seed;
+    }
+
+    public static String email(int index) {
+        return "loadtest-" + index + "@aimex.test";
+    }
+
+    public int users() {
+        return users;
+    }
+
+    public void seed() {
+        long start = System.nanoTime();
+        // one bcrypt hash shared by every synthetic user; encoding it per user dominates seeding otherwise
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        int seeded = 0;
+        long expenses = 0;
+
+        for (int i = 0; i < users; i++) {
+            if (userRepository.findByEmail(email(i)).isPresent()) {
+                continue;
+            }
+            expenses += seedUser(i, passwordHash);
+            seeded++;
+        }
+
+        LOG.info("Seeded {} of {} load-test users with {} expenses in {} ms",
+                seeded, users, expenses, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long seedUser(int index, String passwordHash) {
+        SplittableRandom random = new SplittableRandom(seed + index);
+
+        User user = new User();
+        user.setEmail(email(index));
+        user.setPasswordHash(passwordHash);
+        user.setCreatedAt(LocalDateTime.now());
+        String userId = userRepository.save(user).getId();
+
+        List<Category> categories = new ArrayList<>();
+        for (SyntheticCatalog.CategoryProfile profile : SyntheticCatalog.CATEGORIES.subList(0, categoriesPerUser)) {
+            Category category = new Category();
+            category.setId(new ObjectId().toHexString());
+            category.setUserId(userId);
+            category.setName(profile.name());
+            category.setColor(profile.color());
+            category.setIcon(profile.icon());
+            categories.add(category);
+        }
+        mongoTemplate.insert(categories, Category.class);
+
+        YearMonth current = YearMonth.now();
+        List<Budget> budgets = new ArrayList<>();
+        for (int m = 0; m < budgetMonths; m++) {
+            String monthYear = current.minusMonths(m).toString();
+            for (int c = 0; c < categories.size(); c++) {
+                SyntheticCatalog.CategoryProfile profile = SyntheticCatalog.CATEGORIES.get(c);
+                Budget budget = new Budget();
+                budget.setUserId(userId);
+                budget.setCategoryId(categories.get(c).getId());
+                budget.setMonthYear(monthYear);
+                // limits near expected spend so alerts cover every status
+                budget.setMonthlyLimit((double) Math.round(profile.expectedMonthlySpend(expensesPerMonth, categoriesPerUser)
+                        * (0.7 + random.nextDouble() * 0.6)));
+                budgets.add(budget);
+            }
+        }
+        if (!budgets.isEmpty()) {
+            mongoTemplate.insert(budgets, Budget.class);
+        }
+
+        long written = 0;
+        List<Expense> batch = new ArrayList<>(batchSize);
+        for (int m = historyMonths - 1; m >= 0; m--) {
+            YearMonth month = current.minusMonths(m);
+            int days = month.equals(current) ? LocalDate.now().getDayOfMonth() : month.lengthOfMonth();
+
+            for (int c = 0; c < categories.size(); c++) {
+                for (SyntheticCatalog.Subscription subscription : SyntheticCatalog.CATEGORIES.get(c).subscriptions()) {
+                    if (subscription.dayOfMonth() <= days) {
+                        batch.add(expense(userId, categories.get(c).getId(), subscription.merchant(),
+                                subscription.amount(), month.atDay(subscription.dayOfMonth()), random));
+                    }
+                }
+            }
+
+            int count = month.equals(current) ? expensesPerMonth * days / month.lengthOfMonth() : expensesPerMonth;
+            for (int e = 0; e < count; e++) {
+                int c = SyntheticCatalog.pickCategory(random, categories.size());
+                SyntheticCatalog.CategoryProfile profile = SyntheticCatalog.CATEGORIES.get(c);
+                batch.add(expense(userId, categories.get(c).getId(), profile.pickMerchant(random),
+                        profile.sampleAmount(random), month.atDay(1 + random.nextInt(days)), random));
+            }
+
+            if (batch.size() >= batchSize) {
+                written += flush(batch);
+            }
+        }
+        written += flush(batch);
+
+        recurrenceEngine.rebuild(userId);
+        return written;
+    }
+
+    private long flush(List<Expense> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int written = batch.size();
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<Expense> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class)
+                    .insert(chunk)
+                    .execute();
+            rollupService.recordCreatedAll(chunk);
+        }
+        batch.clear();
+        return written;
+    }
+
+    private static Expense expense(String userId, String categoryId, String merchant, double amount,
+                                   LocalDate date, SplittableRandom random) {
+        Expense expense = new Expense();
+        expense.setId(new ObjectId().toHexString());
+        expense.setUserId(userId);
+        expense.setCategoryId(categoryId);
+        expense.setMerchant(merchant);
+        expense.setAmount(amount);
+        expense.setDate(date);
+        expense.setPaymentMethod(SyntheticCatalog.PAYMENT_METHODS.get(random.nextInt(SyntheticCatalog.PAYMENT_METHODS.size())));
+        return expense;
+    }
+}
@@ -0,0 +1,101 @@
+package com.aimex.backend.loadtest;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Category, merchant and amount distributions shared by the seeder and the replay driver.
+ * Amounts are log-normal around a per-category median, which matches real card data far better
+ * than a uniform spread.
+ */
+final class SyntheticCatalog {
+
+    record Subscription(String merchant, double amount, int dayOfMonth) {
+    }
+
+    record CategoryProfile(String name, String color, String icon, double weight, double medianAmount,
+                           List<String> merchants, List<Subscription> subscriptions) {
+
+        String pickMerchant(SplittableRandom random) {
+            return merchants.get(random.nextInt(merchants.size()));
+        }
+
+        double sampleAmount(SplittableRandom random) {
+            double amount = medianAmount * Math.exp(0.6 * gaussian(random));
+            return Math.round(amount * 100) / 100.0;
+        }
+
+        double expectedMonthlySpend(int expensesPerMonth, int categoryCount) {
+            // mean of the log-normal is median * e^(sigma^2 / 2)
+            double variable = expensesPerMonth * weight / totalWeight(categoryCount) * medianAmount * Math.exp(0.18);
+            return variable + subscriptions.stream().mapToDouble(Subscription::amount).sum();
+        }
+    }
+
+    static final List<String> PAYMENT_METHODS = List.of("UPI", "Card", "Cash", "Wallet");
+
+    static final List<CategoryProfile> CATEGORIES = List.of(
+            new CategoryProfile("Food", "#FF7043", "restaurant", 0.30, 350,
+                    List.of("Swiggy", "Zomato", "Dominos", "Starbucks", "McDonalds", "Haldirams", "Chai Point"),
+                    List.of()),
+            new CategoryProfile("Groceries", "#66BB6A", "shopping_cart", 0.20, 900,
+                    List.of("BigBasket", "Blinkit", "DMart", "Zepto", "Reliance Fresh", "More Supermarket"),
+                    List.of()),
+            new CategoryProfile("Travel", "#42A5F5", "flight", 0.12, 450,
+                    List.of("Uber", "Ola", "Rapido", "IRCTC", "IndiGo", "MakeMyTrip", "Namma Metro"),
+                    List.of()),
+            new CategoryProfile("Shopping", "#AB47BC", "shopping_bag", 0.10, 1500,
+                    List.of("Amazon", "Flipkart", "Myntra", "Ajio", "Nykaa", "Decathlon"),
+                    List.of()),
+            new CategoryProfile("Utilities", "#FFCA28", "bolt", 0.06, 800,
+                    List.of("BESCOM", "Airtel", "Jio", "Tata Power", "Indane Gas"),
+                    List.of(new Subscription("ACT Fibernet", 1179, 5))),
+            new CategoryProfile("Entertainment", "#EC407A", "movie", 0.07, 400,
+                    List.of("BookMyShow", "PVR", "INOX", "Steam"),
+                    List.of(new Subscription("Netflix", 649, 12), new Subscription("Spotify", 119, 20))),
+            new CategoryProfile("Health", "#26A69A", "local_hospital", 0.05, 700,
+                    List.of("Apollo Pharmacy", "PharmEasy", "Practo", "1mg"),
+                    List.of(new Subscription("Cult.fit", 1499, 1))),
+            new CategoryProfile("Rent", "#8D6E63", "home", 0.01, 25000,
+                    List.of("NoBroker"),
+                    List.of(new Subscription("Landlord Rent", 25000, 1))),
+            new CategoryProfile("Fuel", "#78909C", "local_gas_station", 0.05, 1200,
+                    List.of("Indian Oil", "HP Petrol", "Bharat Petroleum", "Shell"),
+                    List.of()),
+            new CategoryProfile("Education", "#5C6BC0", "school", 0.02, 2000,
+                    List.of("Udemy", "Coursera", "Crossword"),
+                    List.of()),
+            new CategoryProfile("Gaming", "#7E57C2", "sports_esports", 0.02, 999,
+                    List.of("PlayStation Store", "Xbox", "Epic Games"),
+                    List.of(new Subscription("Xbox Game Pass", 499, 15)))
+    );
+
+    private SyntheticCatalog() {
+    }
+
+    // weighted pick among the first categoryCount categories
+    static int pickCategory(SplittableRandom random, int categoryCount) {
+        double target = random.nextDouble() * totalWeight(categoryCount);
+        for (int i = 0; i < categoryCount - 1; i++) {
+            target -= CATEGORIES.get(i).weight();
+            if (target < 0) {
+                return i;
+            }
+        }
+        return categoryCount - 1;
+    }
+
+    private static double totalWeight(int categoryCount) {
+        double total = 0;
+        for (int i = 0; i < categoryCount; i++) {
+            total += CATEGORIES.get(i).weight();
+        }
+        return total;
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller; SplittableRandom has no nextGaussian
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
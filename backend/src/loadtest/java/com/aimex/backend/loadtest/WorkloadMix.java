@@ -0,0 +1,86 @@
+package com.aimex.backend.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted request mix, configured as {@code aimex.loadtest.mix=login=5,create-expense=40,...}.
+ * Weights are relative; operations left out are never issued.
+ */
+final class WorkloadMix {
+
+    enum Operation {
+        LOGIN("login"),
+        CREATE_EXPENSE("create-expense"),
+        BULK_IMPORT("bulk-import"),
+        DASHBOARD("dashboard"),
+        ANALYTICS_PANELS("analytics-panels"),
+        BUDGET_ALERTS("budget-alerts");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        static Operation from(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equalsIgnoreCase(key.trim())) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown load-test operation: " + key);
+        }
+    }
+
+    private final Operation[] operations;
+    private final double[] cumulative;
+
+    private WorkloadMix(Map<Operation, Double> weights) {
+        this.operations = weights.keySet().toArray(Operation[]::new);
+        this.cumulative = new double[operations.length];
+        double total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    static WorkloadMix parse(String spec) {
+        Map<Operation, Double> weights = new EnumMap<>(Operation.class);
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Load-test mix entries look like name=weight, got: " + entry);
+            }
+            double weight = Double.parseDouble(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Load-test mix weights cannot be negative: " + entry);
+            }
+            if (weight > 0) {
+                weights.merge(Operation.from(parts[0]), weight, Double::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Load-test mix is empty: " + spec);
+        }
+        return new WorkloadMix(weights);
+    }
+
+    Operation pick(SplittableRandom random) {
+        double target = random.nextDouble();
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (target < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+}
@@ -0,0 +1,51 @@
+package com.aimex.backend.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class MetricsConfig {
+
+    // request, service, repository, Mongo driver and Gemini latencies are exported as histograms so
+    // p50/p95/p99 can be aggregated across instances from /actuator/prometheus
+    private static final List<String> LATENCY_METRICS = List.of(
+            "http.server.requests",
+            "aimex.service",
+            "spring.data.repository.invocations",
+            "mongodb.driver.commands",
+            "aimex.gemini.calls",
+            "aimex.recurrence.detection");
+
+    // picks up class-level @Timed on the services
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterRegistryCustomizer<MeterRegistry> latencyHistograms() {
+        return registry -> registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (LATENCY_METRICS.stream().noneMatch(id.getName()::startsWith)) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+                        .maximumExpectedValue((double) Duration.ofSeconds(30).toNanos())
+                        .build()
+                        .merge(config);
+            }
+        });
+    }
+}
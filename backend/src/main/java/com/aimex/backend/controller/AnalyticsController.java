@@ -4,15 +4,24 @@ package com.aimex.backend.controller;
 import com.aimex.backend.models.User;
 import com.aimex.backend.repository.UserRepository;
 import com.aimex.backend.service.AnalyticsService;
+import com.aimex.backend.service.DashboardService;
+import com.aimex.backend.service.InsightsService;
+import com.aimex.backend.service.TrendGranularity;
 import com.aimex.backend.service.dto.CategoryBreakdownDTO;
+import com.aimex.backend.service.dto.DashboardDTO;
 import com.aimex.backend.service.dto.InsightDTO;
 import com.aimex.backend.service.dto.MonthlySummaryDTO;
 import com.aimex.backend.service.dto.TrendPointDTO;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,34 +29,74 @@ import java.util.Optional;
 @RequestMapping("/aimex/analytics")
 public class AnalyticsController {
     private final AnalyticsService analyticsService;
+    private final DashboardService dashboardService;
+    private final InsightsService insightsService;
     private final UserRepository userRepository;
+    private final ConditionalReads conditionalReads;
 
-    public AnalyticsController(AnalyticsService analyticsService, UserRepository userRepository) {
+    public AnalyticsController(AnalyticsService analyticsService,
+                               DashboardService dashboardService,
+                               InsightsService insightsService,
+                               UserRepository userRepository,
+                               ConditionalReads conditionalReads) {
         this.analyticsService = analyticsService;
+        this.dashboardService = dashboardService;
+        this.insightsService = insightsService;
         this.userRepository = userRepository;
+        this.conditionalReads = conditionalReads;
     }
 
     // 1️⃣ Monthly Summary
     @GetMapping("/{userId}/monthly")
-    public MonthlySummaryDTO getMonthlySummary(@PathVariable("userId")  String userId) {
-        return analyticsService.getMonthlySummary(userId);
+    public ResponseEntity<MonthlySummaryDTO> getMonthlySummary(@PathVariable("userId")  String userId,
+                                                               WebRequest request) {
+        return conditionalReads.serve(request, userId, "monthly", "",
+                () -> analyticsService.getMonthlySummary(userId));
     }
 
     // 2️⃣ Category Breakdown
     @GetMapping("/{userId}/category")
-    public List<CategoryBreakdownDTO> getCategoryBreakdown(@PathVariable("userId")  String userId) {
-        return analyticsService.getCategoryBreakdown(userId);
+    public ResponseEntity<List<CategoryBreakdownDTO>> getCategoryBreakdown(@PathVariable("userId")  String userId,
+                                                                           @RequestParam(value = "from", required = false)
+                                                                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                           @RequestParam(value = "to", required = false)
+                                                                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                           WebRequest request) {
+        return conditionalReads.serve(request, userId, "category", from + ".." + to,
+                () -> analyticsService.getCategoryBreakdown(userId, from, to));
     }
 
-    // 3️⃣ Trends (last 6 months)
+    // 3️⃣ Trends (last N weeks, months or quarters)
     @GetMapping("/{userId}/trends")
-    public List<TrendPointDTO> getTrends(@PathVariable("userId")  String userId) {
-        return analyticsService.getTrends(userId);
+    public ResponseEntity<List<TrendPointDTO>> getTrends(@PathVariable("userId")  String userId,
+                                                         @RequestParam(value = "granularity", defaultValue = "month") String granularity,
+                                                         @RequestParam(value = "periods", defaultValue = "12") int periods,
+                                                         WebRequest request) {
+        TrendGranularity resolved = TrendGranularity.from(granularity);
+        return conditionalReads.serve(request, userId, "trends", resolved + ":" + periods,
+                () -> analyticsService.getTrends(userId, resolved, periods));
     }
 
-    // 4️⃣ AI Insights (placeholder)
-    @GetMapping("/insights")
-    public List<InsightDTO> getInsights() {
-        return analyticsService.getAIInsights();
+    // Dashboard: summary, breakdown, trends and budget alerts in one round trip
+    @GetMapping("/{userId}/dashboard")
+    public ResponseEntity<DashboardDTO> getDashboard(@PathVariable("userId") String userId,
+                                                     @RequestParam(value = "from", required = false)
+                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                     @RequestParam(value = "to", required = false)
+                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                     @RequestParam(value = "granularity", defaultValue = "month") String granularity,
+                                                     @RequestParam(value = "periods", defaultValue = "12") int periods,
+                                                     @RequestParam(value = "monthYear", required = false) String monthYear,
+                                                     WebRequest request) {
+        TrendGranularity resolved = TrendGranularity.from(granularity);
+        return conditionalReads.serve(request, userId, "dashboard",
+                from + ".." + to + "|" + resolved + ":" + periods + "|" + monthYear,
+                () -> dashboardService.getDashboard(userId, from, to, resolved, periods, monthYear));
+    }
+
+    // 4️⃣ AI Insights, generated by the nightly batch
+    @GetMapping("/{userId}/insights")
+    public List<InsightDTO> getInsights(@PathVariable("userId") String userId) {
+        return insightsService.getInsights(userId);
     }
 }
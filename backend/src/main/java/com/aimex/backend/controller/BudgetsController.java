@@ -1,9 +1,14 @@
 package com.aimex.backend.controller;
 
 import com.aimex.backend.models.Budget;
+import com.aimex.backend.service.BudgetAlertStream;
 import com.aimex.backend.service.BudgetService;
 import com.aimex.backend.service.dto.BudgetAlertDTO;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -11,8 +16,15 @@ import java.util.List;
 public class BudgetsController {
 
     private final BudgetService budgetService;
-    public BudgetsController(BudgetService budgetService) {
+    private final BudgetAlertStream budgetAlertStream;
+    private final ConditionalReads conditionalReads;
+
+    public BudgetsController(BudgetService budgetService,
+                             BudgetAlertStream budgetAlertStream,
+                             ConditionalReads conditionalReads) {
         this.budgetService = budgetService;
+        this.budgetAlertStream = budgetAlertStream;
+        this.conditionalReads = conditionalReads;
     }
 
     @GetMapping("/aimex/{userId}/budgets")
@@ -36,8 +48,22 @@ public class BudgetsController {
     }
 
     @GetMapping("/aimex/{userId}/budgets/alerts")
-    public List<BudgetAlertDTO> getAlerts(@PathVariable String userId,
-                                          @RequestParam(value = "monthYear", required = false) String monthYear) {
-        return budgetService.getBudgetAlerts(userId, monthYear);
+    public ResponseEntity<List<BudgetAlertDTO>> getAlerts(@PathVariable String userId,
+                                                          @RequestParam(value = "monthYear", required = false) String monthYear,
+                                                          @RequestParam(value = "from", required = false) String from,
+                                                          @RequestParam(value = "to", required = false) String to,
+                                                          WebRequest request) {
+        if (from != null || to != null) {
+            return conditionalReads.serve(request, userId, "budget-alerts-range", from + ".." + to,
+                    () -> budgetService.getBudgetAlertsForRange(userId, from, to));
+        }
+        return conditionalReads.serve(request, userId, "budget-alerts", String.valueOf(monthYear),
+                () -> budgetService.getBudgetAlerts(userId, monthYear));
+    }
+
+    // pushes a "budget-alert" event whenever a current-month budget changes status
+    @GetMapping(value = "/aimex/{userId}/budgets/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts(@PathVariable String userId) {
+        return budgetAlertStream.subscribe(userId);
     }
 }
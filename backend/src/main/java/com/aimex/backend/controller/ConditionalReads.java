@@ -0,0 +1,37 @@
+package com.aimex.backend.controller;
+
+import com.aimex.backend.service.DataVersionService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET for per-user read endpoints. The user's data tag is the strong ETag; a matching
+ * If-None-Match gets a 304 before anything is computed, otherwise the result is served from the
+ * tag-keyed result cache. {@code no-cache} lets clients keep the body but revalidate every time.
+ */
+@Component
+public class ConditionalReads {
+
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private final DataVersionService dataVersionService;
+
+    public ConditionalReads(DataVersionService dataVersionService) {
+        this.dataVersionService = dataVersionService;
+    }
+
+    public <T> ResponseEntity<T> serve(WebRequest request, String userId, String endpoint, String params,
+                                       Supplier<T> compute) {
+        String tag = dataVersionService.tag(userId);
+        if (request.checkNotModified(tag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).cacheControl(REVALIDATE).build();
+        }
+        T body = dataVersionService.cached(userId, tag, endpoint, params, compute);
+        return ResponseEntity.ok().eTag(tag).cacheControl(REVALIDATE).body(body);
+    }
+}
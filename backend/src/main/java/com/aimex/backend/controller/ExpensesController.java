@@ -1,18 +1,35 @@
 package com.aimex.backend.controller;
 
 import com.aimex.backend.models.Expense;
+import com.aimex.backend.service.ExpenseImportService;
 import com.aimex.backend.service.ExpenseService;
+import com.aimex.backend.service.dto.BulkImportResultDTO;
+import com.aimex.backend.service.dto.ExpensePageDTO;
+import com.aimex.backend.service.dto.ExpensePageRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class ExpensesController {
 
+    private static final long MAX_CATEGORIZATION_WAIT_SECONDS = 30;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final ExpenseService expenseService;
-    public ExpensesController(ExpenseService expenseService) {
+    private final ExpenseImportService expenseImportService;
+    public ExpensesController(ExpenseService expenseService, ExpenseImportService expenseImportService) {
         this.expenseService = expenseService;
+        this.expenseImportService = expenseImportService;
     }
 
     @GetMapping("/aimex/{userId}/expenses")
@@ -20,21 +37,67 @@ public class ExpensesController {
         return expenseService.getAllExpenses(userId);
     }
 
+    @GetMapping("/aimex/{userId}/expenses/page")
+    public ExpensePageDTO getExpensePage(@PathVariable String userId,
+                                         @RequestParam(value = "categoryId", required = false) String categoryId,
+                                         @RequestParam(value = "merchant", required = false) String merchant,
+                                         @RequestParam(value = "minAmount", required = false) Double minAmount,
+                                         @RequestParam(value = "maxAmount", required = false) Double maxAmount,
+                                         @RequestParam(value = "from", required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                         @RequestParam(value = "to", required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                         @RequestParam(value = "compact", defaultValue = "false") boolean compact) {
+        return expenseService.getExpensePage(userId,
+                new ExpensePageRequest(categoryId, merchant, minAmount, maxAmount, from, to, cursor, limit, compact));
+    }
+
+    // expenses flagged as unusually large for their category or merchant, newest first
+    @GetMapping("/aimex/{userId}/expenses/anomalies")
+    public List<Expense> getAnomalies(@PathVariable String userId,
+                                      @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        return expenseService.getAnomalies(userId, limit);
+    }
+
     @GetMapping("/aimex/{userId}/expenses/{id}")
     public Optional<Expense> getExpensesById(@PathVariable("id") String id, @PathVariable String userId){
         return expenseService.getExpenseById(userId, id);
     }
 
+    // Returns once background categorization finishes or waitSeconds elapses, whichever is first.
+    @GetMapping("/aimex/{userId}/expenses/{id}/categorization")
+    public CompletableFuture<Expense> awaitCategorization(@PathVariable String userId,
+                                                          @PathVariable String id,
+                                                          @RequestParam(value = "waitSeconds", defaultValue = "0") long waitSeconds) {
+        Duration wait = Duration.ofSeconds(Math.clamp(waitSeconds, 0, MAX_CATEGORIZATION_WAIT_SECONDS));
+        return expenseService.awaitCategorization(userId, id, wait);
+    }
+
     @PostMapping("/aimex/{userId}/expenses")
     public Expense postExpenses(@PathVariable("userId") String userId, @RequestBody Expense expense){
        return expenseService.createExpense(userId, expense);
     }
 
     @PostMapping("/aimex/{userId}/expenses/bulk")
-    public List<Expense> bulkImport(@PathVariable String userId, @RequestBody List<Expense> expenses) {
+    public BulkImportResultDTO bulkImport(@PathVariable String userId, @RequestBody List<Expense> expenses) {
         return expenseService.bulkCreateExpenses(userId, expenses);
     }
 
+    // Streams an NDJSON or CSV file; one progress line is written back per processed chunk.
+    @PostMapping(value = "/aimex/{userId}/expenses/import",
+            consumes = {NDJSON, "text/csv"},
+            produces = NDJSON)
+    public void importExpenses(@PathVariable String userId,
+                               @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                               InputStream body,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        expenseImportService.importStream(userId, body,
+                ExpenseImportService.Format.fromContentType(contentType), response.getOutputStream());
+    }
+
     @PutMapping("/aimex/{userId}/expenses/{id}")
     public Expense update(@PathVariable String userId, @PathVariable String id, @RequestBody Expense expense) {
         return expenseService.updateExpense(userId, id, expense);
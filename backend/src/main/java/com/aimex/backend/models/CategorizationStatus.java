@@ -0,0 +1,7 @@
+package com.aimex.backend.models;
+
+public enum CategorizationStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
@@ -1,5 +1,6 @@
 package com.aimex.backend.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
@@ -8,11 +9,15 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 @Document("expenses")
 @CompoundIndexes({
         @CompoundIndex(name = "user_date_idx", def = "{'userId': 1, 'date': 1}"),
-        @CompoundIndex(name = "user_merchant_idx", def = "{'userId': 1, 'merchant': 1}")
+        @CompoundIndex(name = "user_date_id_idx", def = "{'userId': 1, 'date': -1, '_id': -1}"),
+        @CompoundIndex(name = "user_merchant_key_idx", def = "{'userId': 1, 'merchantKey': 1}"),
+        @CompoundIndex(name = "categorization_status_idx", def = "{'categorizationStatus': 1}", sparse = true),
+        @CompoundIndex(name = "user_anomalous_date_idx", def = "{'userId': 1, 'isAnomalous': 1, 'date': -1, '_id': -1}")
 })
 @Data
 public class Expense {
@@ -24,6 +29,8 @@ public class Expense {
     private Double amount;
     @Indexed
     private String merchant;
+    @JsonIgnore
+    private String merchantKey;      // trimmed, lower-cased merchant; kept in step by setMerchant
     private String description;
 
     private String categoryId;         // AI suggested or user-chosen
@@ -33,9 +40,20 @@ public class Expense {
     private String paymentMethod;    // UPI, Card, Cash, Wallet, etc.
 
     private Boolean isRecurring;
+    private Boolean isAnomalous;
+    private Double anomalyScore;      // standard deviations above the usual spend for its category or merchant
 
     // For analytics & optimization
     private Double confidenceScore;   // AI categorization confidence
     private String aiReasoning;       // short reason from AI
+    private CategorizationStatus categorizationStatus;   // set when categorization runs in the background
 
+    public void setMerchant(String merchant) {
+        this.merchant = merchant;
+        this.merchantKey = merchantKey(merchant);
+    }
+
+    public static String merchantKey(String merchant) {
+        return merchant == null ? null : merchant.trim().toLowerCase(Locale.ROOT);
+    }
 }
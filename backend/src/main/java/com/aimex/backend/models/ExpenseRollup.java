@@ -0,0 +1,22 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document("expense_rollups")
+@CompoundIndex(name = "user_month_idx", def = "{'userId': 1, 'monthYear': 1}")
+@Data
+public class ExpenseRollup {
+
+    @Id
+    private String id;                // userId:monthYear:categoryId
+
+    private String userId;
+    private String monthYear;         // "2025-11"
+    private String categoryId;        // null for uncategorized spend
+
+    private double total;
+    private long count;
+}
@@ -0,0 +1,18 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document("job_leases")
+@Data
+public class JobLease {
+
+    @Id
+    private String id;                 // job name
+
+    private String owner;              // instance holding the lease
+    private Instant lockedUntil;
+}
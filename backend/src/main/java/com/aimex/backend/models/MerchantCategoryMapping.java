@@ -0,0 +1,36 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document("merchant_category_map")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_last_used_idx", def = "{'userId': 1, 'lastUsedAt': -1}"),
+        @CompoundIndex(name = "user_category_idx", def = "{'userId': 1, 'categoryId': 1}")
+})
+@Data
+public class MerchantCategoryMapping {
+
+    @Id
+    private String id;                 // userId:normalized merchant
+
+    private String userId;
+    private String merchant;           // trimmed, lower-cased
+
+    private String categoryId;
+    private String categoryName;
+    private Double confidence;
+    private String reason;
+
+    private String source;             // AI or USER; USER entries are never overwritten by AI results
+
+    private LocalDateTime updatedAt;
+    @Indexed
+    private LocalDateTime lastUsedAt;
+}
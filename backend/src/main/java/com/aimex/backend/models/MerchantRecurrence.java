@@ -0,0 +1,35 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Document("merchant_recurrence")
+@Data
+public class MerchantRecurrence {
+
+    public record Occurrence(LocalDate date, double amount) { }
+
+    @Id
+    private String id;                 // userId:normalized merchant
+
+    @Indexed
+    private String userId;
+    private String merchant;           // trimmed, lower-cased
+
+    private List<Occurrence> occurrences = new ArrayList<>();   // most recent few, oldest first
+
+    private RecurrenceCadence cadence; // null until the intervals settle on one
+    private LocalDate cadenceSince;    // latest occurrence when the current cadence was first detected
+    private Double amountLow;
+    private Double amountHigh;
+
+    @Version
+    private Long version;
+}
@@ -0,0 +1,32 @@
+package com.aimex.backend.models;
+
+public enum RecurrenceCadence {
+    WEEKLY(7, 1),
+    MONTHLY(30, 3),
+    ANNUAL(365, 7);
+
+    private final int days;
+    private final int toleranceDays;
+
+    RecurrenceCadence(int days, int toleranceDays) {
+        this.days = days;
+        this.toleranceDays = toleranceDays;
+    }
+
+    public int days() {
+        return days;
+    }
+
+    public boolean matches(long intervalDays) {
+        return Math.abs(intervalDays - days) <= toleranceDays;
+    }
+
+    public static RecurrenceCadence of(long intervalDays) {
+        for (RecurrenceCadence cadence : values()) {
+            if (cadence.matches(intervalDays)) {
+                return cadence;
+            }
+        }
+        return null;
+    }
+}
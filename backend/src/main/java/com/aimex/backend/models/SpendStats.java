@@ -0,0 +1,32 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+@Document("spend_stats")
+@Data
+public class SpendStats {
+
+    @Id
+    private String id;                 // userId:c:categoryId or userId:m:normalized merchant
+
+    @Indexed
+    private String userId;
+
+    // running statistics over expense amounts, kept short on disk
+    @Field("n")
+    private long count;
+    @Field("mu")
+    private double mean;
+    @Field("m2")
+    private double m2;                 // Welford's sum of squared deviations from the mean
+    @Field("ew")
+    private double ewma;               // exponentially decayed mean, weighted towards recent expenses
+
+    @Version
+    private Long version;
+}
@@ -18,6 +18,9 @@ public class User {
     private String email;
     private String passwordHash;
 
+    @Indexed
+    private boolean disabled;        // disabled accounts are refused at login and their tokens stop working
+
     private LocalDateTime createdAt;
 }
 
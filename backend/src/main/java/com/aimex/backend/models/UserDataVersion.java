@@ -0,0 +1,16 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document("user_data_versions")
+@Data
+public class UserDataVersion {
+
+    @Id
+    private String id;                // userId
+
+    private long version;             // bumped by every expense, category and budget write
+    private long expenseVersion;      // bumped by expense writes only; guards the in-memory expense columns
+}
@@ -0,0 +1,31 @@
+package com.aimex.backend.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Document("user_insights")
+@CompoundIndex(name = "user_period_idx", def = "{'userId': 1, 'period': -1}")
+@Data
+public class UserInsight {
+
+    public record Insight(String type, String title, String message) { }
+
+    @Id
+    private String id;                 // userId:period
+
+    private String userId;
+    private String period;             // ISO week, "2025-W47"
+
+    private long dataVersion;          // user data version the insights were generated from
+    private String source;             // "gemini", "rules" or "reused"
+    private Instant claimedAt;         // set when a batch run claims the period
+    private Instant generatedAt;       // null while the claim is still a placeholder
+
+    private List<Insight> insights = new ArrayList<>();
+}
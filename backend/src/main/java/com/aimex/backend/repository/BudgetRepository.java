@@ -4,10 +4,12 @@ import com.aimex.backend.models.Budget;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface BudgetRepository extends MongoRepository<Budget,String> {
     List<Budget> findAllByUserId(String userId);
     List<Budget> findAllByUserIdAndMonthYear(String userId, String monthYear);
+    List<Budget> findAllByUserIdAndMonthYearIn(String userId, Collection<String> monthYears);
 }
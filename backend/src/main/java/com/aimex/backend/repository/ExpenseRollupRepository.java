@@ -0,0 +1,13 @@
+package com.aimex.backend.repository;
+
+import com.aimex.backend.models.ExpenseRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ExpenseRollupRepository extends MongoRepository<ExpenseRollup,String> {
+    List<ExpenseRollup> findAllByUserIdAndMonthYearIn(String userId, Collection<String> monthYears);
+}
@@ -0,0 +1,15 @@
+package com.aimex.backend.repository;
+
+import com.aimex.backend.models.MerchantCategoryMapping;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MerchantCategoryMappingRepository extends MongoRepository<MerchantCategoryMapping,String> {
+    List<MerchantCategoryMapping> findByUserIdOrderByLastUsedAtDesc(String userId, Pageable pageable);
+
+    void deleteAllByUserIdAndCategoryId(String userId, String categoryId);
+}
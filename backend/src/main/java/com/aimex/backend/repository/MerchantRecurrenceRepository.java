@@ -0,0 +1,10 @@
+package com.aimex.backend.repository;
+
+import com.aimex.backend.models.MerchantRecurrence;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MerchantRecurrenceRepository extends MongoRepository<MerchantRecurrence, String> {
+    void deleteAllByUserId(String userId);
+}
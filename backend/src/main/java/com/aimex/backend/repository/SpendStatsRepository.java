@@ -0,0 +1,9 @@
+package com.aimex.backend.repository;
+
+import com.aimex.backend.models.SpendStats;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SpendStatsRepository extends MongoRepository<SpendStats, String> {
+}
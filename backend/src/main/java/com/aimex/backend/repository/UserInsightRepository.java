@@ -0,0 +1,12 @@
+package com.aimex.backend.repository;
+
+import com.aimex.backend.models.UserInsight;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserInsightRepository extends MongoRepository<UserInsight, String> {
+    Optional<UserInsight> findFirstByUserIdAndGeneratedAtNotNullOrderByPeriodDesc(String userId);
+}
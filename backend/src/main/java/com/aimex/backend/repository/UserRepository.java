@@ -2,11 +2,16 @@ package com.aimex.backend.repository;
 
 import com.aimex.backend.models.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends MongoRepository<User,String> {
     Optional<User> findByEmail(String email);
+
+    @Query(value = "{ 'disabled': true }", fields = "{ '_id': 1 }")
+    List<User> findDisabledUserIds();
 }
@@ -0,0 +1,10 @@
+package com.aimex.backend.security;
+
+import java.time.Instant;
+
+// principal built straight from verified token claims
+public record AuthenticatedUser(
+        String email,
+        String userId,
+        Instant expiresAt
+) { }
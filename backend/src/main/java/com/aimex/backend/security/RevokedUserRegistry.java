@@ -0,0 +1,46 @@
+package com.aimex.backend.security;
+
+import com.aimex.backend.models.User;
+import com.aimex.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory set of disabled user ids so token checks never touch MongoDB. The set is
+ * reloaded every {@code aimex.auth.revocation-refresh}, which bounds how long a token of a
+ * freshly disabled account keeps working after the {@code disabled} flag is set on the user.
+ */
+@Component
+public class RevokedUserRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RevokedUserRegistry.class);
+
+    private final UserRepository userRepository;
+    private volatile Set<String> revoked = Set.of();
+
+    public RevokedUserRegistry(UserRepository userRepository) {
+        this.userRepository = userRepository;
+        refresh();
+    }
+
+    public boolean isRevoked(String userId) {
+        return revoked.contains(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${aimex.auth.revocation-refresh:30s}")
+    public void refresh() {
+        try {
+            revoked = userRepository.findDisabledUserIds().stream()
+                    .map(User::getId)
+                    .collect(Collectors.toUnmodifiableSet());
+        } catch (Exception ex) {
+            // keep serving the last known set rather than locking everyone out
+            LOG.warn("Could not refresh disabled users: {}", ex.getMessage());
+        }
+    }
+}
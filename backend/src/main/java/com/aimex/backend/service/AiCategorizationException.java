@@ -0,0 +1,12 @@
+package com.aimex.backend.service;
+
+public class AiCategorizationException extends RuntimeException {
+
+    public AiCategorizationException(String message) {
+        super(message);
+    }
+
+    public AiCategorizationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
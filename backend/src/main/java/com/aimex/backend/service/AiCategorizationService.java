@@ -3,135 +3,337 @@ package com.aimex.backend.service;
 import com.aimex.backend.models.Category;
 import com.aimex.backend.models.Expense;
 import com.aimex.backend.service.dto.AiCategorySuggestion;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@Timed(value = "aimex.service", histogram = true)
 public class AiCategorizationService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AiCategorizationService.class);
 
+    // aimex.gemini.responses outcomes
+    private static final String PARSED = "parsed";
+    private static final String UNKNOWN_CATEGORY = "unknown_category";
+    private static final String PARSE_FAILURE = "parse_failure";
+
     private final CategoryService categoryService;
-    private final RestClient restClient;
+    private final GeminiClient geminiClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final String apiKey;
-    private final String model;
-    private final Map<String, AiCategorySuggestion> merchantCache = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final MerchantKnowledgeBase knowledgeBase;
+    private final Map<String, CompletableFuture<Optional<AiCategorySuggestion>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+    private final MeterRegistry meterRegistry;
 
     public AiCategorizationService(CategoryService categoryService,
-                                   RestClient.Builder restClientBuilder,
-                                   @Value("${gemini.api.key:}") String apiKey,
-                                   @Value("gemini-2.0-flash-lite") String model) {
+                                   MerchantKnowledgeBase knowledgeBase,
+                                   GeminiClient geminiClient,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${gemini.batch-size:25}") int batchSize) {
         this.categoryService = categoryService;
-        this.apiKey = apiKey;
-        this.model = model;
-        // Gemini native base URL
-        this.restClient = restClientBuilder
-                .baseUrl("https://generativelanguage.googleapis.com/v1beta")
-                .defaultHeader("x-goog-api-key", apiKey) // Native Auth Header
-                .defaultHeader("Content-Type", "application/json")
-                .build();
+        this.knowledgeBase = knowledgeBase;
+        this.geminiClient = geminiClient;
+        this.batchSize = Math.max(1, batchSize);
+        this.meterRegistry = meterRegistry;
+        this.coalescedCounter = Counter.builder("aimex.categorization.coalesced")
+                .description("Lookups that waited on an identical in-flight Gemini call instead of making their own")
+                .register(meterRegistry);
+        Gauge.builder("aimex.categorization.in_flight", inFlight, Map::size)
+                .register(meterRegistry);
     }
 
 
     public Optional<AiCategorySuggestion> suggestCategory(String userId, Expense expense) {
+        return suggest(userId, expense, false);
+    }
+
+    // Same as suggestCategory, but a failed Gemini call surfaces as AiCategorizationException so the caller can retry.
+    public Optional<AiCategorySuggestion> suggestCategoryOrThrow(String userId, Expense expense) {
+        return suggest(userId, expense, true);
+    }
+
+    // Answers from the cache / merchant_category_map only, never calling the LLM.
+    public Optional<AiCategorySuggestion> suggestKnownCategory(String userId, Expense expense) {
+        String merchant = normalizeMerchant(expense);
+        if (expense.getCategoryId() != null || merchant.isBlank()) {
+            return Optional.empty();
+        }
+        return knowledgeBase.lookup(userId, merchant, categoryService.getSnapshot(userId));
+    }
+
+    private Optional<AiCategorySuggestion> suggest(String userId, Expense expense, boolean propagateFailures) {
         if (expense.getCategoryId() != null) {
             return Optional.empty();
         }
 
-        String merchant = Optional.ofNullable(expense.getMerchant())
-                .map(String::trim)
-                .map(String::toLowerCase)
-                .orElse("");
+        String merchant = normalizeMerchant(expense);
 
         if (merchant.isBlank()) {
             return Optional.empty();
         }
 
-        String cacheKey = userId + ":" + merchant;
-        AiCategorySuggestion cached = merchantCache.get(cacheKey);
-        if (cached != null) {
-            return Optional.of(cached);
+        // in-process cache first, then the shared merchant_category_map, and only then the LLM
+        CategorySnapshot categories = categoryService.getSnapshot(userId);
+        Optional<AiCategorySuggestion> known = knowledgeBase.lookup(userId, merchant, categories);
+        if (known.isPresent()) {
+            return known;
         }
 
-        List<Category> categories = categoryService.getCategoriesByUser(userId);
         if (categories.isEmpty()) {
             // If no categories are defined by the user, we cannot suggest anything meaningful.
-            return Optional.of(new AiCategorySuggestion(
-                    null,
-                    "Uncategorized",
-                    0.0,
-                    "No categories defined by user. Please create categories first."
-            ));
+            return Optional.of(noCategoriesSuggestion());
         }
 
         Optional<AiCategorySuggestion> suggestion = Optional.empty();
 
-        if (apiKey != null && !apiKey.isBlank()) {
-            suggestion = callGeminiAI(expense, categories);
+        if (geminiClient.isConfigured()) {
+            suggestion = singleFlight(userId, merchant, expense, categories, propagateFailures);
         }
 
         // If AI categorization failed or API key is missing, provide a "manual selection" suggestion.
         if (suggestion.isEmpty()) {
-            return Optional.of(new AiCategorySuggestion(
-                    null,
-                    "Uncategorized",
-                    0.0,
-                    "The AI could not identify a category. Please select one manually."
-            ));
+            return Optional.of(manualSelectionSuggestion());
         }
-
-        suggestion.ifPresent(result -> merchantCache.put(cacheKey, result));
         return suggestion;
     }
 
-    private Optional<AiCategorySuggestion> callGeminiAI(Expense expense, List<Category> categories) {
+    // The first caller for a userId:merchant asks Gemini; concurrent callers for the same key wait on its future.
+    private Optional<AiCategorySuggestion> singleFlight(String userId, String merchant, Expense expense,
+                                                        CategorySnapshot categories, boolean propagateFailures) {
+        String key = MerchantKnowledgeBase.mappingId(userId, merchant);
+        CompletableFuture<Optional<AiCategorySuggestion>> call = new CompletableFuture<>();
+        CompletableFuture<Optional<AiCategorySuggestion>> existing = inFlight.putIfAbsent(key, call);
+
+        if (existing != null) {
+            coalescedCounter.increment();
+            return awaitInFlight(existing, propagateFailures);
+        }
+
         try {
-            String prompt = buildPrompt(expense, categories);
-
-            Map<String, Object> request = Map.of(
-                    "contents", List.of(
-                            Map.of("parts", List.of(
-                                    Map.of("text", prompt)
-                            ))
-                    ),
-                    "generationConfig", Map.of(
-                            "temperature", 0.2,
-                            "responseMimeType", "application/json"
-                    )
-            );
-
-            String response = restClient.post()
-                    .uri("/models/" + model + ":generateContent")
-                    .header("x-goog-api-key", apiKey)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(request)
-                    .retrieve()
-                    .body(String.class);
-
-            return parseResponse(response, categories);
+            Optional<AiCategorySuggestion> suggestion = requestSuggestion(expense, categories);
+            // recorded before the key is released so a caller arriving afterwards hits the cache
+            suggestion.ifPresent(result -> knowledgeBase.recordAiSuggestion(userId, merchant, result));
+            call.complete(suggestion);
+            return suggestion;
+        } catch (AiCategorizationException ex) {
+            call.completeExceptionally(ex);
+            if (propagateFailures) {
+                throw ex;
+            }
+            LOG.warn("AI categorization failed: {}", ex.getMessage());
+            return Optional.empty();
+        } catch (RuntimeException ex) {
+            call.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
 
-        } catch (Exception ex) {
+    private Optional<AiCategorySuggestion> awaitInFlight(CompletableFuture<Optional<AiCategorySuggestion>> call,
+                                                         boolean propagateFailures) {
+        try {
+            return call.join();
+        } catch (CompletionException ex) {
+            if (propagateFailures && ex.getCause() instanceof AiCategorizationException failure) {
+                throw failure;
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Categorizes a whole import at once. Merchants are deduplicated and knowledge-base misses are sent
+     * {@code gemini.batch-size} per prompt; only entries missing from the model's JSON array
+     * fall back to a single-transaction call. A batch that fails outright or returns nothing
+     * usable leaves the whole chunk for manual selection. The result list is aligned with {@code expenses}.
+     */
+    public List<Optional<AiCategorySuggestion>> suggestCategories(String userId, List<Expense> expenses) {
+        List<Optional<AiCategorySuggestion>> results = new ArrayList<>(Collections.nCopies(expenses.size(), Optional.empty()));
+
+        // distinct merchant -> positions in the incoming list
+        Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            String merchant = normalizeMerchant(expense);
+            if (expense.getCategoryId() != null || merchant.isBlank()) {
+                continue;
+            }
+
+            pending.computeIfAbsent(merchant, key -> new ArrayList<>()).add(i);
+        }
+
+        CategorySnapshot categories = categoryService.getSnapshot(userId);
+        knowledgeBase.lookupAll(userId, pending.keySet(), categories).forEach((merchant, suggestion) -> {
+            for (int index : pending.remove(merchant)) {
+                results.set(index, Optional.of(suggestion));
+            }
+        });
+
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        // merchants another request is already asking Gemini about are waited on instead of sent again
+        Map<String, CompletableFuture<Optional<AiCategorySuggestion>>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Optional<AiCategorySuggestion>>> borrowed = new LinkedHashMap<>();
+        for (String merchant : pending.keySet()) {
+            CompletableFuture<Optional<AiCategorySuggestion>> call = new CompletableFuture<>();
+            CompletableFuture<Optional<AiCategorySuggestion>> existing =
+                    inFlight.putIfAbsent(MerchantKnowledgeBase.mappingId(userId, merchant), call);
+            if (existing == null) {
+                owned.put(merchant, call);
+            } else {
+                borrowed.put(merchant, existing);
+            }
+        }
+        coalescedCounter.increment(borrowed.size());
+
+        try {
+            List<String> merchants = new ArrayList<>(owned.keySet());
+
+            for (int from = 0; from < merchants.size(); from += batchSize) {
+                List<String> chunk = merchants.subList(from, Math.min(from + batchSize, merchants.size()));
+                List<Expense> representatives = chunk.stream()
+                        .map(merchant -> expenses.get(pending.get(merchant).getFirst()))
+                        .toList();
+
+                List<Optional<AiCategorySuggestion>> chunkResults = categorizeChunk(representatives, categories);
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    String merchant = chunk.get(i);
+                    Optional<AiCategorySuggestion> suggestion = chunkResults.get(i);
+                    suggestion.ifPresent(result -> knowledgeBase.recordAiSuggestion(userId, merchant, result));
+                    owned.get(merchant).complete(suggestion);
+                    for (int index : pending.get(merchant)) {
+                        results.set(index, suggestion);
+                    }
+                }
+            }
+        } finally {
+            owned.forEach((merchant, call) -> {
+                // only still open if categorizing threw; waiters then fall back like a failed call
+                call.completeExceptionally(new AiCategorizationException("Batch categorization aborted"));
+                inFlight.remove(MerchantKnowledgeBase.mappingId(userId, merchant), call);
+            });
+        }
+
+        borrowed.forEach((merchant, call) -> {
+            Optional<AiCategorySuggestion> suggestion = Optional.of(awaitInFlight(call, false)
+                    .orElseGet(this::manualSelectionSuggestion));
+            for (int index : pending.get(merchant)) {
+                results.set(index, suggestion);
+            }
+        });
+
+        return results;
+    }
+
+    // an explicit category picked by the user becomes the merchant's mapping, ahead of any AI answer
+    public void recordUserChoice(String userId, Expense expense, Category category) {
+        String merchant = normalizeMerchant(expense);
+        if (!merchant.isBlank()) {
+            knowledgeBase.recordUserChoice(userId, merchant, category);
+        }
+    }
+
+    private List<Optional<AiCategorySuggestion>> categorizeChunk(List<Expense> chunk, CategorySnapshot categories) {
+        if (categories.isEmpty()) {
+            return Collections.nCopies(chunk.size(), Optional.of(noCategoriesSuggestion()));
+        }
+        if (!geminiClient.isConfigured()) {
+            return Collections.nCopies(chunk.size(), Optional.of(manualSelectionSuggestion()));
+        }
+
+        Map<Integer, Optional<AiCategorySuggestion>> parsed;
+        try {
+            parsed = parseBatchResponse(geminiClient.generateContent(buildBatchPrompt(chunk, categories)), chunk.size(), categories);
+        } catch (JsonProcessingException ex) {
+            recordResponses(PARSE_FAILURE, chunk.size());
+            LOG.warn("Could not parse batch AI response for {} transactions: {}", chunk.size(), ex.getMessage());
+            return Collections.nCopies(chunk.size(), Optional.of(manualSelectionSuggestion()));
+        } catch (AiCategorizationException ex) {
+            // one call per item would only hit the same outage or open circuit again
+            LOG.warn("Batch AI categorization failed for {} transactions: {}", chunk.size(), ex.getMessage());
+            return Collections.nCopies(chunk.size(), Optional.of(manualSelectionSuggestion()));
+        }
+        if (parsed.isEmpty()) {
+            // no usable entries at all: the batch answer failed, not individual items
+            return Collections.nCopies(chunk.size(), Optional.of(manualSelectionSuggestion()));
+        }
+
+        List<Optional<AiCategorySuggestion>> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Optional<AiCategorySuggestion> suggestion = parsed.containsKey(i)
+                    ? parsed.get(i)
+                    : callGeminiAI(chunk.get(i), categories);
+            results.add(Optional.of(suggestion.orElseGet(this::manualSelectionSuggestion)));
+        }
+        return results;
+    }
+
+    private String normalizeMerchant(Expense expense) {
+        return Optional.ofNullable(expense.getMerchant())
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .orElse("");
+    }
+
+    private AiCategorySuggestion noCategoriesSuggestion() {
+        return new AiCategorySuggestion(
+                null,
+                "Uncategorized",
+                0.0,
+                "No categories defined by user. Please create categories first."
+        );
+    }
+
+    private AiCategorySuggestion manualSelectionSuggestion() {
+        return new AiCategorySuggestion(
+                null,
+                "Uncategorized",
+                0.0,
+                "The AI could not identify a category. Please select one manually."
+        );
+    }
+
+    private Optional<AiCategorySuggestion> callGeminiAI(Expense expense, CategorySnapshot categories) {
+        try {
+            return requestSuggestion(expense, categories);
+
+        } catch (AiCategorizationException ex) {
             LOG.warn("AI categorization failed: {}", ex.getMessage());
             return Optional.empty();
         }
     }
 
+    private Optional<AiCategorySuggestion> requestSuggestion(Expense expense, CategorySnapshot categories) {
+        return parseResponse(geminiClient.generateContent(buildPrompt(expense, categories)), categories);
+    }
 
-    private String buildPrompt(Expense expense, List<Category> categories) {
-        String categoryOptions = categories.stream()
+    String buildPrompt(Expense expense, CategorySnapshot categories) {
+        String categoryOptions = categories.categories().stream()
                 .map(Category::getName)
                 .reduce((a, b) -> a + ", " + b)
                 .orElse("");
@@ -162,40 +364,120 @@ public class AiCategorizationService {
     }
 
 
-    private Optional<AiCategorySuggestion> parseResponse(String response, List<Category> categories) {
-        try {
-            JsonNode root = objectMapper.readTree(response);
+    String buildBatchPrompt(List<Expense> expenses, CategorySnapshot categories) {
+        String categoryOptions = categories.categories().stream()
+                .map(Category::getName)
+                .reduce((a, b) -> a + ", " + b)
+                .orElse("");
 
-            JsonNode candidates = root.path("candidates");
-            if (!candidates.isArray() || candidates.isEmpty()) {
-                return Optional.empty();
-            }
+        StringBuilder transactions = new StringBuilder();
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            transactions.append("%d. Amount: %s | Merchant: %s | Description: %s%n".formatted(
+                    i,
+                    expense.getAmount(),
+                    expense.getMerchant(),
+                    Optional.ofNullable(expense.getDescription()).orElse("")
+            ));
+        }
+
+        return """
+            You are an AI that categorizes personal financial expense transactions.
+            Infer the meaning of categories only from their names. Do not assume predefined meanings.
+            Choose the most semantically appropriate category for every transaction below.
+
+            Respond ONLY with a JSON array containing one object per transaction, in the exact format:
+            [{"index": 0, "categoryName": "...", "confidence": 0.0, "reason": "..."}]
+            The "index" must be the number shown before the transaction.
 
-            String contentText = candidates.get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text")
-                    .asText();
+            Notes:
+            - If the transaction clearly refers to a digital game or gaming platform (e.g., Steam, Xbox, PS5, PlayStation, Battlefield etc.) -> choose the closest matching category like Gaming or similar if available.
+            - If unclear or confidence is low, pick "Uncategorized" with low confidence.
+
+            Available Categories: [%s]
+
+            Transactions:
+            %s
+            """.formatted(categoryOptions, transactions);
+    }
+
+    Optional<AiCategorySuggestion> parseResponse(String response, CategorySnapshot categories) {
+        try {
+            String contentText = extractContentText(response);
 
             if (contentText == null || contentText.isBlank()) {
+                recordResponses(PARSE_FAILURE, 1);
                 return Optional.empty();
             }
 
-            JsonNode parsedContent = objectMapper.readTree(contentText);
-
-            String categoryName = parsedContent.path("categoryName").asText(null);
-            double confidence = parsedContent.path("confidence").asDouble(0.6);
-            String reason = parsedContent.path("reason").asText("AI suggested category");
-
-            return categories.stream()
-                    .filter(category -> category.getName().equalsIgnoreCase(categoryName))
-                    .findFirst()
-                    .map(category -> new AiCategorySuggestion(category.getId(), category.getName(), confidence, reason));
+            Optional<AiCategorySuggestion> suggestion = toSuggestion(objectMapper.readTree(contentText), categories);
+            recordResponses(suggestion.isPresent() ? PARSED : UNKNOWN_CATEGORY, 1);
+            return suggestion;
 
         } catch (Exception ex) {
+            recordResponses(PARSE_FAILURE, 1);
             LOG.warn("Failed to parse GeminiAI response: {}", ex.getMessage());
             return Optional.empty();
         }
     }
+
+    // Only indexes that were actually parsed are present; an unknown category name still counts as parsed.
+    Map<Integer, Optional<AiCategorySuggestion>> parseBatchResponse(String response, int size, CategorySnapshot categories)
+            throws JsonProcessingException {
+        String contentText = extractContentText(response);
+        if (contentText == null || contentText.isBlank()) {
+            recordResponses(PARSE_FAILURE, size);
+            return Map.of();
+        }
+
+        JsonNode items = objectMapper.readTree(contentText);
+        if (!items.isArray()) {
+            recordResponses(PARSE_FAILURE, size);
+            return Map.of();
+        }
+
+        Map<Integer, Optional<AiCategorySuggestion>> parsed = new HashMap<>();
+        for (JsonNode item : items) {
+            JsonNode index = item.path("index");
+            if (!index.canConvertToInt() || index.asInt() < 0 || index.asInt() >= size || !item.hasNonNull("categoryName")) {
+                continue;
+            }
+            parsed.put(index.asInt(), toSuggestion(item, categories));
+        }
+
+        long known = parsed.values().stream().filter(Optional::isPresent).count();
+        recordResponses(PARSED, known);
+        recordResponses(UNKNOWN_CATEGORY, parsed.size() - known);
+        recordResponses(PARSE_FAILURE, size - parsed.size());
+        return parsed;
+    }
+
+    private void recordResponses(String outcome, long count) {
+        if (count > 0) {
+            meterRegistry.counter("aimex.gemini.responses", "outcome", outcome).increment(count);
+        }
+    }
+
+    private String extractContentText(String response) throws JsonProcessingException {
+        JsonNode candidates = objectMapper.readTree(response).path("candidates");
+        if (!candidates.isArray() || candidates.isEmpty()) {
+            return null;
+        }
+
+        return candidates.get(0)
+                .path("content")
+                .path("parts")
+                .path(0)
+                .path("text")
+                .asText();
+    }
+
+    private Optional<AiCategorySuggestion> toSuggestion(JsonNode node, CategorySnapshot categories) {
+        String categoryName = node.path("categoryName").asText(null);
+        double confidence = node.path("confidence").asDouble(0.6);
+        String reason = node.path("reason").asText("AI suggested category");
+
+        return categories.findByName(categoryName)
+                .map(category -> new AiCategorySuggestion(category.getId(), category.getName(), confidence, reason));
+    }
 }
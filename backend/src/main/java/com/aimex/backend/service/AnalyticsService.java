@@ -1,97 +1,242 @@
 package com.aimex.backend.service;
 
 import com.aimex.backend.models.Expense;
-import com.aimex.backend.repository.ExpenseRepository;
+import com.aimex.backend.models.ExpenseRollup;
 import com.aimex.backend.service.dto.CategoryBreakdownDTO;
-import com.aimex.backend.service.dto.InsightDTO;
 import com.aimex.backend.service.dto.MonthlySummaryDTO;
 import com.aimex.backend.service.dto.TrendPointDTO;
+import io.micrometer.core.annotation.Timed;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "aimex.service", histogram = true)
 public class AnalyticsService {
 
-    private final ExpenseRepository expenseRepository;
+    public static final String UNCATEGORIZED = "uncategorized";
+    private static final int MAX_TREND_PERIODS = 120;
 
-    public AnalyticsService(ExpenseRepository expenseRepository) {
-        this.expenseRepository = expenseRepository;
+    private final ExpenseRollupService rollupService;
+    private final ExpenseColumnStore columnStore;
+    private final MongoTemplate mongoTemplate;
+
+    public AnalyticsService(ExpenseRollupService rollupService, ExpenseColumnStore columnStore, MongoTemplate mongoTemplate) {
+        this.rollupService = rollupService;
+        this.columnStore = columnStore;
+        this.mongoTemplate = mongoTemplate;
     }
 
     public MonthlySummaryDTO getMonthlySummary(String userId) {
-        LocalDate now = LocalDate.now();
-        LocalDate start = now.withDayOfMonth(1);
-
-        // returns a list of expenses within a range
-        List<Expense> thisMonth = expenseRepository.findByUserIdAndDateBetween(userId, start, now);
-
-        Map<String, Double> categoryTotals = thisMonth.stream()
-                .collect(Collectors.groupingBy(
-                        Expense::getCategoryId,
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
-
-        double totalSpent = thisMonth.stream().mapToDouble(Expense::getAmount).sum();
-
-        YearMonth lastMonthYM = YearMonth.now().minusMonths(1);
-        LocalDate lastStart = lastMonthYM.atDay(1);
-        LocalDate lastEnd = lastMonthYM.atEndOfMonth();
-        
-        List<Expense> lastMonth = expenseRepository.findByUserIdAndDateBetween(userId, lastStart, lastEnd);
-        
-        double lastMonthTotal = lastMonth.stream().mapToDouble(Expense::getAmount).sum();
-        
-        return  new MonthlySummaryDTO(totalSpent, categoryTotals, lastMonthTotal);
-        
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth lastMonth = currentMonth.minusMonths(1);
+
+        Optional<MonthlySummaryDTO> inMemory = columnStore.read(userId, columns -> monthlySummary(columns, currentMonth));
+        if (inMemory.isPresent()) {
+            return inMemory.get();
+        }
+
+        // both months come back from one query against the rollup collection
+        List<ExpenseRollup> rollups = rollupService.getRollups(userId, List.of(currentMonth, lastMonth));
+
+        Map<String, Double> categoryTotals = new HashMap<>();
+        double totalSpent = 0;
+        double lastMonthTotal = 0;
+
+        for (ExpenseRollup rollup : rollups) {
+            if (rollup.getCount() <= 0) {
+                continue;
+            }
+            if (rollup.getMonthYear().equals(currentMonth.toString())) {
+                totalSpent += rollup.getTotal();
+                categoryTotals.merge(categoryKey(rollup.getCategoryId()), rollup.getTotal(), Double::sum);
+            } else {
+                lastMonthTotal += rollup.getTotal();
+            }
+        }
+
+        return new MonthlySummaryDTO(totalSpent, categoryTotals, lastMonthTotal);
     }
 
-    public List<CategoryBreakdownDTO> getCategoryBreakdown(String userId) {
-        List<Expense> all = expenseRepository.findAllByUserId(userId);
-
-        return all.stream()
-                .collect(
-                        Collectors.groupingBy(
-                                Expense::getCategoryId,
-                                Collectors.summingDouble(Expense::getAmount)
-                        )
-                )
-                .entrySet()
+    public List<CategoryBreakdownDTO> getCategoryBreakdown(String userId, LocalDate from, LocalDate to) {
+        Optional<List<CategoryBreakdownDTO>> inMemory = columnStore.read(userId, columns -> categoryBreakdown(columns, from, to));
+        if (inMemory.isPresent()) {
+            return inMemory.get();
+        }
+
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (from != null || to != null) {
+            Criteria date = Criteria.where("date");
+            if (from != null) {
+                date.gte(from);
+            }
+            if (to != null) {
+                date.lte(to);
+            }
+            criteria.andOperator(date);
+        }
+
+        // only (categoryId, total, count) comes back, however long the user's history is
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group("categoryId")
+                        .sum("amount").as("total")
+                        .count().as("count"),
+                Aggregation.sort(Sort.Direction.DESC, "total")
+        );
+
+        return mongoTemplate.aggregate(aggregation, Expense.class, Document.class)
+                .getMappedResults()
                 .stream()
-                .map(c -> new CategoryBreakdownDTO(c.getKey(), c.getValue()))
+                .map(result -> new CategoryBreakdownDTO(
+                        categoryKey(result.getString("_id")),
+                        ((Number) result.get("total")).doubleValue(),
+                        ((Number) result.get("count")).longValue()))
                 .collect(Collectors.toList());
     }
 
-    public List<TrendPointDTO> getTrends(String userId) {
-        List<TrendPointDTO> result = new ArrayList<>();
+    public List<TrendPointDTO> getTrends(String userId, TrendGranularity granularity, int periods) {
+        if (periods < 1 || periods > MAX_TREND_PERIODS) {
+            throw new IllegalArgumentException("Trend periods must be between 1 and " + MAX_TREND_PERIODS);
+        }
 
-        for (int i = 11; i >= 0; i--) {
-            YearMonth yearMonth = YearMonth.now().minusMonths(i);
-            LocalDate start = yearMonth.atDay(1);
-            LocalDate end = yearMonth.atEndOfMonth();
+        LocalDate end = granularity.startOfPeriod(LocalDate.now());
+        LocalDate start = granularity.plusPeriods(end, -(periods - 1));
+
+        Optional<List<TrendPointDTO>> inMemory = columnStore.read(userId, columns -> trends(columns, granularity, start, periods));
+        if (inMemory.isPresent()) {
+            return inMemory.get();
+        }
 
-            double total = expenseRepository.findByUserIdAndDateBetween(userId, start, end)
-                    .stream().mapToDouble(Expense::getAmount).sum();
+        Map<String, Double> totals = granularity == TrendGranularity.WEEK
+                ? weeklyTotals(userId, start, granularity.plusPeriods(end, 1).minusDays(1))
+                : monthlyTotals(userId, YearMonth.from(start), YearMonth.from(granularity.plusPeriods(end, 1)).minusMonths(1), granularity);
 
-            result.add(new TrendPointDTO(yearMonth.toString(), total));
+        // empty periods are filled here rather than in the pipeline
+        List<TrendPointDTO> result = new ArrayList<>();
+        for (LocalDate period = start; !period.isAfter(end); period = granularity.plusPeriods(period, 1)) {
+            String label = granularity.label(period);
+            result.add(new TrendPointDTO(label, totals.getOrDefault(label, 0d)));
         }
 
         return result;
+    }
 
+    private Map<String, Double> weeklyTotals(String userId, LocalDate start, LocalDate end) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId).and("date").gte(start).lte(end)),
+                Aggregation.project("amount").and(ExpenseAggregations.formatDate("date", "%G-W%V")).as("period"),
+                Aggregation.group("period").sum("amount").as("total")
+        );
+
+        return collectTotals(mongoTemplate.aggregate(aggregation, Expense.class, Document.class).getMappedResults(),
+                TrendGranularity.WEEK);
     }
 
-    public List<InsightDTO> getAIInsights() {
-        // type, title and message
-        // yet to integrate logic
-        // TODO - integrate gen ai llm here
-        return List.of(
-                new InsightDTO("info", "Spending Stable", "Your spending is consistent with last month."),
-                new InsightDTO("warning", "High Dining Spend", "You spent 22% more on Dining this month.")
+    // month and quarter buckets are folded from the already aggregated rollups
+    private Map<String, Double> monthlyTotals(String userId, YearMonth start, YearMonth end, TrendGranularity granularity) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId)
+                        .and("monthYear").gte(start.toString()).lte(end.toString())),
+                Aggregation.group("monthYear").sum("total").as("total")
         );
+
+        return collectTotals(mongoTemplate.aggregate(aggregation, ExpenseRollup.class, Document.class).getMappedResults(),
+                granularity);
+    }
+
+    private Map<String, Double> collectTotals(List<Document> results, TrendGranularity granularity) {
+        Map<String, Double> totals = new HashMap<>();
+        for (Document result : results) {
+            String period = result.getString("_id");
+            if (period == null) {
+                continue;
+            }
+            String label = granularity == TrendGranularity.WEEK
+                    ? period
+                    : granularity.label(YearMonth.parse(period).atDay(1));
+            totals.merge(label, ((Number) result.get("total")).doubleValue(), Double::sum);
+        }
+        return totals;
+    }
+
+    // --- columnar paths: one pass over primitive arrays, no per-row objects ---
+
+    private MonthlySummaryDTO monthlySummary(ExpenseColumns columns, YearMonth currentMonth) {
+        int[] months = {
+                epochDay(currentMonth.minusMonths(1).atDay(1)),
+                epochDay(currentMonth.atDay(1)),
+                epochDay(currentMonth.plusMonths(1).atDay(1))
+        };
+        long[] monthTotals = new long[2];
+        columns.sumByPeriod(months, monthTotals);
+
+        long[] totals = new long[columns.categoryCount()];
+        long[] counts = new long[columns.categoryCount()];
+        columns.sumByCategory(months[1], months[2] - 1, false, totals, counts);
+
+        Map<String, Double> categoryTotals = new HashMap<>();
+        for (int ordinal = 0; ordinal < totals.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                categoryTotals.put(categoryKey(columns.categoryId(ordinal)), ExpenseColumns.fromMinorUnits(totals[ordinal]));
+            }
+        }
+        return new MonthlySummaryDTO(ExpenseColumns.fromMinorUnits(monthTotals[1]), categoryTotals,
+                ExpenseColumns.fromMinorUnits(monthTotals[0]));
+    }
+
+    private List<CategoryBreakdownDTO> categoryBreakdown(ExpenseColumns columns, LocalDate from, LocalDate to) {
+        long[] totals = new long[columns.categoryCount()];
+        long[] counts = new long[columns.categoryCount()];
+        columns.sumByCategory(from == null ? Integer.MIN_VALUE + 1 : epochDay(from),
+                to == null ? Integer.MAX_VALUE : epochDay(to),
+                from == null && to == null, totals, counts);
+
+        List<CategoryBreakdownDTO> result = new ArrayList<>();
+        for (int ordinal = 0; ordinal < totals.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                result.add(new CategoryBreakdownDTO(categoryKey(columns.categoryId(ordinal)),
+                        ExpenseColumns.fromMinorUnits(totals[ordinal]), counts[ordinal]));
+            }
+        }
+        result.sort(Comparator.comparingDouble((CategoryBreakdownDTO breakdown) -> breakdown.total).reversed());
+        return result;
+    }
+
+    private List<TrendPointDTO> trends(ExpenseColumns columns, TrendGranularity granularity, LocalDate start, int periods) {
+        int[] boundaries = new int[periods + 1];
+        for (int p = 0; p <= periods; p++) {
+            boundaries[p] = epochDay(granularity.plusPeriods(start, p));
+        }
+        long[] totals = new long[periods];
+        columns.sumByPeriod(boundaries, totals);
+
+        List<TrendPointDTO> result = new ArrayList<>(periods);
+        for (int p = 0; p < periods; p++) {
+            result.add(new TrendPointDTO(granularity.label(granularity.plusPeriods(start, p)),
+                    ExpenseColumns.fromMinorUnits(totals[p])));
+        }
+        return result;
+    }
+
+    private static int epochDay(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+
+    private String categoryKey(String categoryId) {
+        return categoryId == null ? UNCATEGORIZED : categoryId;
     }
 }
@@ -0,0 +1,374 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.SpendStats;
+import com.aimex.backend.repository.SpendStatsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Flags unusually large expenses as they are written. Each (user, category) and
+ * (user, merchant) pair has one {@link SpendStats} document holding a count, Welford mean and
+ * variance, and an exponentially decayed mean. Scoring an expense reads and updates at most two
+ * of them, however long the user's history is.
+ * <p>
+ * The score is how many standard deviations the amount sits above the usual spend, taken as the
+ * larger of the long-run and decayed means, so a gradual rise does not keep firing. An expense is
+ * scored against the statistics as they were before it, and takes the higher of its category and
+ * merchant scores. Pairs with fewer than {@code aimex.anomaly.min-samples} expenses score 0.
+ * <p>
+ * Scoring only reads. The statistics are updated after the expense write succeeds, so a
+ * rejected write never counts. On first start, the statistics are seeded from existing history.
+ */
+@Service
+public class AnomalyDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnomalyDetector.class);
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final Duration SEED_LEASE = Duration.ofHours(1);
+    private static final int MAX_FEED_SIZE = 200;
+    // keeps near-constant amounts (subscriptions, fixed bills) from scoring on rounding noise
+    private static final double MIN_RELATIVE_SPREAD = 0.1;
+
+    private final SpendStatsRepository statsRepository;
+    private final MongoTemplate mongoTemplate;
+    private final JobLock jobLock;
+    private final Counter conflictCounter;
+    private final Counter flaggedCounter;
+    private final double threshold;
+    private final int minSamples;
+    private final double alpha;
+
+    public AnomalyDetector(SpendStatsRepository statsRepository,
+                           MongoTemplate mongoTemplate,
+                           JobLock jobLock,
+                           MeterRegistry meterRegistry,
+                           @Value("${aimex.anomaly.threshold:4.0}") double threshold,
+                           @Value("${aimex.anomaly.min-samples:10}") int minSamples,
+                           @Value("${aimex.anomaly.ewma-alpha:0.1}") double alpha) {
+        this.statsRepository = statsRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.jobLock = jobLock;
+        this.conflictCounter = meterRegistry.counter("aimex.anomaly.conflicts");
+        this.flaggedCounter = meterRegistry.counter("aimex.anomaly.flagged");
+        this.threshold = threshold;
+        this.minSamples = Math.max(2, minSamples);
+        this.alpha = alpha;
+    }
+
+    public static String categoryStatsId(String userId, String categoryId) {
+        return userId + ":c:" + categoryId;
+    }
+
+    public static String merchantStatsId(String userId, String merchant) {
+        return userId + ":m:" + merchant.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // sets isAnomalous and anomalyScore on a new expense from the statistics as they are; writes nothing
+    public void flagCreated(Expense expense) {
+        flag(expense, scoreAgainstStored(expense, null));
+    }
+
+    // as flagCreated, for an edit; the old version of the expense is taken out of the statistics first
+    public void flagUpdated(Expense before, Expense after) {
+        if (unchanged(before, after)) {
+            after.setIsAnomalous(before.getIsAnomalous());
+            after.setAnomalyScore(before.getAnomalyScore());
+            return;
+        }
+        flag(after, scoreAgainstStored(after, before));
+    }
+
+    /**
+     * Scores every expense of an import, loading the touched statistics with one query. Earlier
+     * rows count towards later ones. Nothing is written here; the rows that make it into the
+     * database are added afterwards with {@link #recordImported}.
+     */
+    public void flagAll(String userId, List<Expense> expenses) {
+        Map<Expense, Double> scores = new IdentityHashMap<>();
+        expenses.forEach(expense -> scores.put(expense, 0d));
+
+        Map<String, List<Expense>> byStats = groupByStats(expenses);
+        Map<String, SpendStats> loaded = load(byStats.keySet());
+        byStats.forEach((id, group) -> {
+            SpendStats stats = loaded.getOrDefault(id, newStats(id, userId));
+            for (Expense expense : group) {
+                scores.merge(expense, score(stats, expense.getAmount()), Math::max);
+                add(stats, expense.getAmount());
+            }
+        });
+        scores.forEach(this::flag);
+    }
+
+    // the write paths below run once the expense write has landed
+
+    public void recordCreated(Expense expense) {
+        for (String id : statsIds(expense)) {
+            update(id, expense.getUserId(), null, stats -> add(stats, expense.getAmount()));
+        }
+    }
+
+    public void recordUpdated(Expense before, Expense after) {
+        if (unchanged(before, after)) {
+            return;
+        }
+        recordDeleted(before);
+        recordCreated(after);
+    }
+
+    public void recordDeleted(Expense expense) {
+        for (String id : statsIds(expense)) {
+            update(id, expense.getUserId(), null, stats -> remove(stats, expense.getAmount()));
+        }
+    }
+
+    // background categorization moved an expense out of "uncategorized"; it joins the category's stats unscored
+    public void recordCategorized(Expense expense) {
+        if (trackable(expense) && expense.getCategoryId() != null) {
+            update(categoryStatsId(expense.getUserId(), expense.getCategoryId()), expense.getUserId(), null,
+                    stats -> add(stats, expense.getAmount()));
+        }
+    }
+
+    // adds the inserted rows of an import to their statistics, writing each document once
+    public void recordImported(String userId, List<Expense> imported) {
+        Map<String, List<Expense>> byStats = groupByStats(imported);
+        Map<String, SpendStats> loaded = load(byStats.keySet());
+        byStats.forEach((id, group) -> update(id, userId, loaded.get(id),
+                stats -> group.forEach(expense -> add(stats, expense.getAmount()))));
+    }
+
+    // every instance fires this on startup; the lease keeps the seed to one of them
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedIfEmpty() {
+        try {
+            jobLock.runExclusively("anomaly-seed", SEED_LEASE, () -> {
+                if (statsRepository.count() == 0 && mongoTemplate.exists(new Query(), Expense.class)) {
+                    List<String> userIds = mongoTemplate.findDistinct(new Query(), "userId", Expense.class, String.class);
+                    userIds.forEach(this::seed);
+                    LOG.info("Seeded spend statistics for {} users", userIds.size());
+                }
+            });
+        } catch (RuntimeException ex) {
+            LOG.error("Spend statistics seed failed; statistics will fill in from new writes", ex);
+        }
+    }
+
+    /**
+     * Builds a user's statistics from their expense history with one grouped aggregation per key
+     * type. Welford's M2 is the population variance times the count, and the decayed mean starts
+     * at the mean. Documents that live writes created in the meantime are left as they are.
+     */
+    void seed(String userId) {
+        Aggregation byCategory = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId).and("amount").ne(null).and("categoryId").ne(null)),
+                summarize(Aggregation.group("categoryId")));
+        Aggregation byMerchant = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId).and("amount").ne(null).and("merchant").ne(null)),
+                Aggregation.project("amount")
+                        .and(StringOperators.valueOf(StringOperators.valueOf("merchant").trim()).toLower()).as("merchant"),
+                summarize(Aggregation.group("merchant")));
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SpendStats.class);
+        int seeded = 0;
+        for (Document result : mongoTemplate.aggregate(byCategory, Expense.class, Document.class).getMappedResults()) {
+            seeded += seedOne(operations, categoryStatsId(userId, result.getString("_id")), userId, result);
+        }
+        for (Document result : mongoTemplate.aggregate(byMerchant, Expense.class, Document.class).getMappedResults()) {
+            String merchant = result.getString("_id");
+            if (merchant != null && !merchant.isBlank()) {
+                seeded += seedOne(operations, merchantStatsId(userId, merchant), userId, result);
+            }
+        }
+        if (seeded > 0) {
+            operations.execute();
+        }
+    }
+
+    private static GroupOperation summarize(GroupOperation group) {
+        return group.count().as("n")
+                .avg("amount").as("mu")
+                .stdDevPop("amount").as("sd");
+    }
+
+    private static int seedOne(BulkOperations operations, String id, String userId, Document result) {
+        long count = ((Number) result.get("n")).longValue();
+        double mean = ((Number) result.get("mu")).doubleValue();
+        double deviation = result.get("sd") == null ? 0 : ((Number) result.get("sd")).doubleValue();
+        operations.upsert(Query.query(Criteria.where("_id").is(id)), new Update()
+                .setOnInsert("userId", userId)
+                .setOnInsert("n", count)
+                .setOnInsert("mu", mean)
+                .setOnInsert("m2", deviation * deviation * count)
+                .setOnInsert("ew", mean)
+                .setOnInsert("version", 0L));
+        return 1;
+    }
+
+    // newest first
+    public List<Expense> getAnomalies(String userId, int limit) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("isAnomalous").is(true))
+                .with(PageRequest.of(0, Math.clamp(limit, 1, MAX_FEED_SIZE),
+                        Sort.by(Sort.Direction.DESC, "date", "_id")));
+        return mongoTemplate.find(query, Expense.class);
+    }
+
+    private void flag(Expense expense, double score) {
+        boolean anomalous = score >= threshold;
+        expense.setIsAnomalous(anomalous);
+        expense.setAnomalyScore(Math.round(score * 100) / 100.0);
+        if (anomalous) {
+            flaggedCounter.increment();
+        }
+    }
+
+    // read-modify-write guarded by @Version; a concurrent writer makes us reload and reapply
+    private void update(String id, String userId, SpendStats preloaded, Consumer<SpendStats> mutation) {
+        SpendStats stats = preloaded;
+
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            if (stats == null) {
+                stats = statsRepository.findById(id).orElseGet(() -> newStats(id, userId));
+            }
+            mutation.accept(stats);
+            try {
+                statsRepository.save(stats);
+                return;
+            } catch (OptimisticLockingFailureException | DuplicateKeyException ex) {
+                conflictCounter.increment();
+                stats = null;
+            }
+        }
+
+        LOG.warn("Spend statistics {} kept changing underneath us; skipping this update", id);
+    }
+
+    // the stored statistics are loaded fresh, so {@code replacing} can be taken out of them in place
+    private double scoreAgainstStored(Expense expense, Expense replacing) {
+        List<String> ids = statsIds(expense);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<String> replaced = replacing == null ? List.of() : statsIds(replacing);
+        double score = 0;
+        for (SpendStats stats : statsRepository.findAllById(ids)) {
+            if (replaced.contains(stats.getId())) {
+                remove(stats, replacing.getAmount());
+            }
+            score = Math.max(score, score(stats, expense.getAmount()));
+        }
+        return score;
+    }
+
+    private Map<String, SpendStats> load(Collection<String> ids) {
+        Map<String, SpendStats> loaded = new HashMap<>();
+        statsRepository.findAllById(ids).forEach(stats -> loaded.put(stats.getId(), stats));
+        return loaded;
+    }
+
+    private static Map<String, List<Expense>> groupByStats(List<Expense> expenses) {
+        Map<String, List<Expense>> byStats = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            for (String id : statsIds(expense)) {
+                byStats.computeIfAbsent(id, key -> new ArrayList<>()).add(expense);
+            }
+        }
+        return byStats;
+    }
+
+    private static boolean unchanged(Expense before, Expense after) {
+        return Objects.equals(before.getAmount(), after.getAmount()) && statsIds(before).equals(statsIds(after));
+    }
+
+    private static SpendStats newStats(String id, String userId) {
+        SpendStats stats = new SpendStats();
+        stats.setId(id);
+        stats.setUserId(userId);
+        return stats;
+    }
+
+    double score(SpendStats stats, double amount) {
+        if (stats.getCount() < minSamples) {
+            return 0;
+        }
+        double center = Math.max(stats.getMean(), stats.getEwma());
+        double deviation = Math.sqrt(stats.getM2() / (stats.getCount() - 1));
+        double spread = Math.max(deviation, Math.abs(center) * MIN_RELATIVE_SPREAD);
+        return spread == 0 ? 0 : Math.max(0, (amount - center) / spread);
+    }
+
+    void add(SpendStats stats, double amount) {
+        long count = stats.getCount() + 1;
+        double delta = amount - stats.getMean();
+        double mean = stats.getMean() + delta / count;
+        stats.setCount(count);
+        stats.setMean(mean);
+        stats.setM2(stats.getM2() + delta * (amount - mean));
+        stats.setEwma(count == 1 ? amount : stats.getEwma() + alpha * (amount - stats.getEwma()));
+    }
+
+    // Welford in reverse; the decayed mean cannot be unwound and is left as it is
+    static void remove(SpendStats stats, double amount) {
+        long count = stats.getCount() - 1;
+        if (count <= 0) {
+            stats.setCount(0);
+            stats.setMean(0);
+            stats.setM2(0);
+            return;
+        }
+        double mean = (stats.getMean() * stats.getCount() - amount) / count;
+        stats.setM2(Math.max(0, stats.getM2() - (amount - mean) * (amount - stats.getMean())));
+        stats.setMean(mean);
+        stats.setCount(count);
+    }
+
+    private static List<String> statsIds(Expense expense) {
+        if (!trackable(expense)) {
+            return List.of();
+        }
+        List<String> ids = new ArrayList<>(2);
+        if (expense.getCategoryId() != null) {
+            ids.add(categoryStatsId(expense.getUserId(), expense.getCategoryId()));
+        }
+        if (expense.getMerchant() != null && !expense.getMerchant().isBlank()) {
+            ids.add(merchantStatsId(expense.getUserId(), expense.getMerchant()));
+        }
+        return ids;
+    }
+
+    private static boolean trackable(Expense expense) {
+        return expense.getUserId() != null && expense.getAmount() != null;
+    }
+}
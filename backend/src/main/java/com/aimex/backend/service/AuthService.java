@@ -15,13 +15,16 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final MerchantKnowledgeBase knowledgeBase;
 
     public AuthService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
-                       JwtService jwtService) {
+                       JwtService jwtService,
+                       MerchantKnowledgeBase knowledgeBase) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtService = jwtService;
+        this.knowledgeBase = knowledgeBase;
     }
 
     public AuthResponse register(AuthRequest request) {
@@ -49,6 +52,13 @@ public class AuthService {
             throw new IllegalArgumentException("Invalid credentials");
         }
 
+        if (user.isDisabled()) {
+            throw new IllegalArgumentException("Account disabled");
+        }
+
+        // pull this user's hot merchant mappings into memory without delaying the login response
+        knowledgeBase.warmUpInBackground(user.getId());
+
         String token = jwtService.generateToken(user.getId(), user.getEmail());
         return new AuthResponse(token, user.getId(), user.getEmail());
     }
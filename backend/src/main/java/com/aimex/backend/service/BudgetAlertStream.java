@@ -0,0 +1,277 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Budget;
+import com.aimex.backend.models.ExpenseRollup;
+import com.aimex.backend.repository.BudgetRepository;
+import com.aimex.backend.repository.ExpenseRollupRepository;
+import com.aimex.backend.service.dto.BudgetAlertDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes budget status transitions (green / yellow / red, as decided by
+ * {@link BudgetService#determineStatus}) to Server-Sent Event subscribers.
+ * <p>
+ * Only users with an open stream have state here: the current month's budgets with their spent
+ * totals and last status. {@link ExpenseRollupService} reports every expense write's delta, so
+ * spend moves without a query. An event is sent only when a budget's status changes. Idle streams
+ * cost one async request and a comment line every heartbeat; they hold no thread.
+ * Writes made on other nodes are picked up by {@link #resync()}. It compares the data version
+ * of every subscribed user in batches, reloads the users whose version moved, and also rolls
+ * state over to a new month.
+ */
+@Service
+public class BudgetAlertStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BudgetAlertStream.class);
+    private static final int RESYNC_BATCH = 1000;
+
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRollupRepository rollupRepository;
+    private final DataVersionService dataVersionService;
+    private final Duration timeout;
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // sends happen off the writer's thread so a stalled client cannot hold up an expense write
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BudgetAlertStream(BudgetRepository budgetRepository,
+                             ExpenseRollupRepository rollupRepository,
+                             DataVersionService dataVersionService,
+                             MeterRegistry meterRegistry,
+                             @Value("${aimex.budget-alerts.stream-timeout:30m}") Duration timeout) {
+        this.budgetRepository = budgetRepository;
+        this.rollupRepository = rollupRepository;
+        this.dataVersionService = dataVersionService;
+        this.timeout = timeout;
+        Gauge.builder("aimex.budget-alerts.subscribers", subscriptions,
+                        active -> active.values().stream().mapToInt(subscription -> subscription.emitters.size()).sum())
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String userId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscription subscription = subscriptions.compute(userId, (id, existing) -> {
+            Subscription current = existing != null ? existing : new Subscription();
+            current.emitters.add(emitter);
+            return current;
+        });
+        emitter.onCompletion(() -> unsubscribe(userId, emitter));
+        emitter.onError(error -> unsubscribe(userId, emitter));
+
+        if (!subscription.loaded()) {
+            reload(userId, subscription);
+        }
+        return emitter;
+    }
+
+    // called after the rollup for (userId, monthYear, categoryId) moved by delta
+    public void recordSpend(String userId, String monthYear, String categoryId, double delta) {
+        Subscription subscription = subscriptions.get(userId);
+        if (subscription == null) {
+            return;
+        }
+        List<Event> transitions;
+        synchronized (subscription) {
+            transitions = subscription.add(monthYear, categoryId, delta);
+        }
+        publish(subscription, transitions);
+    }
+
+    // budgets were created, changed or removed
+    public void refresh(String userId) {
+        Subscription subscription = subscriptions.get(userId);
+        if (subscription != null) {
+            publish(subscription, reload(userId, subscription));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${aimex.budget-alerts.resync:30s}")
+    public void resync() {
+        List<String> userIds = List.copyOf(subscriptions.keySet());
+        YearMonth month = YearMonth.now();
+        for (int from = 0; from < userIds.size(); from += RESYNC_BATCH) {
+            List<String> batch = userIds.subList(from, Math.min(userIds.size(), from + RESYNC_BATCH));
+            Map<String, Long> versions = dataVersionService.versions(batch);
+            for (String userId : batch) {
+                Subscription subscription = subscriptions.get(userId);
+                if (subscription == null || !subscription.behind(versions.getOrDefault(userId, 0L), month)) {
+                    continue;
+                }
+                try {
+                    publish(subscription, reload(userId, subscription));
+                } catch (RuntimeException ex) {
+                    LOG.warn("Budget alert resync failed for user {}: {}", userId, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    // keeps proxies from closing idle streams and finds clients that went away
+    @Scheduled(fixedDelayString = "${aimex.budget-alerts.heartbeat:25s}")
+    public void heartbeat() {
+        for (Subscription subscription : subscriptions.values()) {
+            for (SseEmitter emitter : subscription.emitters) {
+                senders.execute(() -> send(emitter, SseEmitter.event().comment("keep-alive")));
+            }
+        }
+    }
+
+    // lets clients reconnect to another node instead of waiting for a timeout
+    @PreDestroy
+    public void close() {
+        subscriptions.values().forEach(subscription -> subscription.emitters.forEach(SseEmitter::complete));
+        senders.shutdown();
+    }
+
+    // the version is read first, so a write that lands during the load is picked up by the next resync
+    private List<Event> reload(String userId, Subscription subscription) {
+        long version = dataVersionService.version(userId);
+        YearMonth month = YearMonth.now();
+        List<Budget> budgets = budgetRepository.findAllByUserIdAndMonthYear(userId, month.toString());
+
+        Map<String, Double> spent = new HashMap<>();
+        if (!budgets.isEmpty()) {
+            for (ExpenseRollup rollup : rollupRepository.findAllByUserIdAndMonthYearIn(userId, List.of(month.toString()))) {
+                spent.merge(categoryKey(rollup.getCategoryId()), rollup.getTotal(), Double::sum);
+            }
+        }
+
+        synchronized (subscription) {
+            return subscription.replace(version, month, budgets, spent);
+        }
+    }
+
+    private void unsubscribe(String userId, SseEmitter emitter) {
+        subscriptions.computeIfPresent(userId, (id, subscription) -> {
+            subscription.emitters.remove(emitter);
+            return subscription.emitters.isEmpty() ? null : subscription;
+        });
+    }
+
+    private void publish(Subscription subscription, List<Event> transitions) {
+        if (transitions.isEmpty()) {
+            return;
+        }
+        for (SseEmitter emitter : subscription.emitters) {
+            senders.execute(() -> {
+                for (Event transition : transitions) {
+                    send(emitter, SseEmitter.event()
+                            .id(Long.toString(transition.sequence()))
+                            .name("budget-alert")
+                            .data(transition.alert()));
+                }
+            });
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException ex) {
+            // the client is gone; completing fires onCompletion, which unsubscribes
+            emitter.completeWithError(ex);
+        }
+    }
+
+    private static String categoryKey(String categoryId) {
+        return Objects.toString(categoryId, "");
+    }
+
+    // ids increase per user, so clients can drop a transition that arrives after a newer one
+    private record Event(long sequence, BudgetAlertDTO alert) {
+    }
+
+    private static final class Tracked {
+        private final Budget budget;
+        private double spent;
+        private String status;
+
+        private Tracked(Budget budget, double spent) {
+            this.budget = budget;
+            this.spent = spent;
+        }
+    }
+
+    // guarded by its own monitor, except for the emitter list
+    private static final class Subscription {
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private final Map<String, List<Tracked>> byCategory = new HashMap<>();
+        private YearMonth month;
+        private long version = -1;
+        private long sequence;
+
+        synchronized boolean loaded() {
+            return month != null;
+        }
+
+        synchronized boolean behind(long currentVersion, YearMonth currentMonth) {
+            return version != currentVersion || !currentMonth.equals(month);
+        }
+
+        List<Event> add(String monthYear, String categoryId, double delta) {
+            List<Tracked> budgets = byCategory.get(categoryKey(categoryId));
+            if (budgets == null || month == null || !month.toString().equals(monthYear)) {
+                return List.of();
+            }
+            List<Event> transitions = new ArrayList<>();
+            for (Tracked tracked : budgets) {
+                tracked.spent += delta;
+                transition(tracked, transitions);
+            }
+            return transitions;
+        }
+
+        // statuses carry over by budget id; a budget seen for the first time starts from green
+        List<Event> replace(long newVersion, YearMonth newMonth, List<Budget> budgets, Map<String, Double> spent) {
+            Map<String, String> previous = new HashMap<>();
+            byCategory.values().forEach(list -> list.forEach(tracked -> previous.put(tracked.budget.getId(), tracked.status)));
+            boolean sameMonth = newMonth.equals(month);
+
+            byCategory.clear();
+            List<Event> transitions = new ArrayList<>();
+            for (Budget budget : budgets) {
+                String key = categoryKey(budget.getCategoryId());
+                Tracked tracked = new Tracked(budget, spent.getOrDefault(key, 0d));
+                tracked.status = sameMonth ? previous.getOrDefault(budget.getId(), "green") : "green";
+                byCategory.computeIfAbsent(key, k -> new ArrayList<>()).add(tracked);
+                if (month != null) {
+                    transition(tracked, transitions);
+                } else {
+                    tracked.status = BudgetService.buildAlert(budget, tracked.spent).status();
+                }
+            }
+            version = newVersion;
+            month = newMonth;
+            return transitions;
+        }
+
+        private void transition(Tracked tracked, List<Event> transitions) {
+            BudgetAlertDTO alert = BudgetService.buildAlert(tracked.budget, tracked.spent);
+            if (!alert.status().equals(tracked.status)) {
+                tracked.status = alert.status();
+                transitions.add(new Event(++sequence, alert));
+            }
+        }
+    }
+}
@@ -2,27 +2,39 @@ package com.aimex.backend.service;
 
 
 import com.aimex.backend.models.Budget;
-import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.ExpenseRollup;
 import com.aimex.backend.repository.BudgetRepository;
-import com.aimex.backend.repository.ExpenseRepository;
 import com.aimex.backend.service.dto.BudgetAlertDTO;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "aimex.service", histogram = true)
 public class BudgetService {
 
-    private final BudgetRepository budgetRepository;
-    private final ExpenseRepository expenseRepository;
+    private static final int MAX_ALERT_MONTHS = 120;
 
-    public BudgetService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository) {
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRollupService rollupService;
+    private final DataVersionService dataVersionService;
+    private final BudgetAlertStream budgetAlertStream;
+
+    public BudgetService(BudgetRepository budgetRepository,
+                         ExpenseRollupService rollupService,
+                         DataVersionService dataVersionService,
+                         BudgetAlertStream budgetAlertStream) {
         this.budgetRepository = budgetRepository;
-        this.expenseRepository = expenseRepository;
+        this.rollupService = rollupService;
+        this.dataVersionService = dataVersionService;
+        this.budgetAlertStream = budgetAlertStream;
     }
 
     public List<Budget> getBudgets(String userId) {
@@ -31,7 +43,10 @@ public class BudgetService {
 
     public Budget createBudget(String userId, Budget budget) {
         budget.setUserId(userId);
-        return budgetRepository.save(budget);
+        Budget saved = budgetRepository.save(budget);
+        dataVersionService.bump(userId);
+        budgetAlertStream.refresh(userId);
+        return saved;
     }
 
     public Budget updateBudget(String userId, String id, Budget updated) {
@@ -44,7 +59,10 @@ public class BudgetService {
 
         updated.setId(id);
         updated.setUserId(userId);
-        return budgetRepository.save(updated);
+        Budget saved = budgetRepository.save(updated);
+        dataVersionService.bump(userId);
+        budgetAlertStream.refresh(userId);
+        return saved;
     }
 
     public Optional<Budget> getBudgetById(String userId, String id) {
@@ -61,31 +79,58 @@ public class BudgetService {
         }
 
         budgetRepository.delete(existing.get());
+        dataVersionService.bump(userId);
+        budgetAlertStream.refresh(userId);
     }
 
     public List<BudgetAlertDTO> getBudgetAlerts(String userId, String monthYear) {
         YearMonth targetMonth = resolveMonth(monthYear);
-        List<Budget> budgets = budgetRepository.findAllByUserIdAndMonthYear(userId, targetMonth.toString());
+        return buildAlerts(userId, targetMonth, targetMonth);
+    }
+
+    public List<BudgetAlertDTO> getBudgetAlertsForRange(String userId, String from, String to) {
+        YearMonth start = resolveMonth(from);
+        YearMonth end = to == null || to.isBlank() ? start : YearMonth.parse(to);
+
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("Budget alert range end must not be before its start");
+        }
+        if (start.plusMonths(MAX_ALERT_MONTHS).isBefore(end)) {
+            throw new IllegalArgumentException("Budget alert range cannot exceed " + MAX_ALERT_MONTHS + " months");
+        }
+
+        return buildAlerts(userId, start, end);
+    }
+
+    // one budgets query and one rollup query, joined in memory by (monthYear, categoryId)
+    private List<BudgetAlertDTO> buildAlerts(String userId, YearMonth start, YearMonth end) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = start; !month.isAfter(end); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+
+        List<Budget> budgets = budgetRepository.findAllByUserIdAndMonthYearIn(
+                userId, months.stream().map(YearMonth::toString).toList());
 
         if (budgets.isEmpty()) {
             return List.of();
         }
 
-        LocalDate start = targetMonth.atDay(1);
-        LocalDate end = targetMonth.atEndOfMonth();
+        Map<String, Double> spentByBucket = rollupService.getRollups(userId, months)
+                .stream()
+                .collect(Collectors.groupingBy(
+                        rollup -> bucketKey(rollup.getMonthYear(), rollup.getCategoryId()),
+                        Collectors.summingDouble(ExpenseRollup::getTotal)
+                ));
 
         return budgets.stream()
-                .map(budget -> buildAlert(userId, budget, start, end))
+                .sorted(Comparator.comparing(Budget::getMonthYear))
+                .map(budget -> buildAlert(budget,
+                        spentByBucket.getOrDefault(bucketKey(budget.getMonthYear(), budget.getCategoryId()), 0d)))
                 .collect(Collectors.toList());
     }
 
-    private BudgetAlertDTO buildAlert(String userId, Budget budget, LocalDate start, LocalDate end) {
-        double spent = expenseRepository
-                .findByUserIdAndCategoryIdAndDateBetween(userId, budget.getCategoryId(), start, end)
-                .stream()
-                .mapToDouble(Expense::getAmount)
-                .sum();
-
+    static BudgetAlertDTO buildAlert(Budget budget, double spent) {
         double limit = Optional.ofNullable(budget.getMonthlyLimit()).orElse(0d);
         double percent = limit == 0 ? 0 : (spent / limit) * 100.0;
 
@@ -99,7 +144,11 @@ public class BudgetService {
         );
     }
 
-    private String determineStatus(double percent) {
+    private String bucketKey(String monthYear, String categoryId) {
+        return monthYear + ":" + categoryId;
+    }
+
+    static String determineStatus(double percent) {
         if (percent < 70) {
             return "green";
         } else if (percent < 90) {
@@ -0,0 +1,190 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background categorization for expenses saved in the PENDING state. A bounded queue feeds a
+ * fixed number of virtual-thread workers; failed Gemini calls are retried with linear backoff
+ * before the expense is given up on. Callers waiting on an expense are completed through
+ * {@link #awaitCompletion(String)} once {@link #notifyCompleted(Expense)} is called for it.
+ */
+@Component
+public class CategorizationWorker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CategorizationWorker.class);
+
+    @FunctionalInterface
+    public interface Completion {
+        // an empty suggestion means every attempt failed
+        void accept(String userId, String expenseId, Optional<AiCategorySuggestion> suggestion);
+    }
+
+    private record Job(String userId, Expense expense, Completion completion, long enqueuedAt) { }
+
+    // shared by every concurrent poll of one expense; callers is only touched inside compute
+    private static final class Waiter {
+        private final CompletableFuture<Expense> future = new CompletableFuture<>();
+        private int callers;
+    }
+
+    private final AiCategorizationService aiCategorizationService;
+    private final BlockingQueue<Job> queue;
+    private final int workerCount;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Map<String, Waiter> waiters = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // follow-up work of timed-out waiters, kept off the JDK's single shared delayer thread
+    private final ExecutorService waiterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean running = true;
+
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+    private final Counter retryCounter;
+    private final Counter rejectedCounter;
+    private final Timer lagTimer;
+
+    public CategorizationWorker(AiCategorizationService aiCategorizationService,
+                                MeterRegistry meterRegistry,
+                                @Value("${aimex.categorization.async.workers:8}") int workerCount,
+                                @Value("${aimex.categorization.async.queue-capacity:10000}") int queueCapacity,
+                                @Value("${aimex.categorization.async.max-attempts:3}") int maxAttempts,
+                                @Value("${aimex.categorization.async.retry-backoff:500ms}") Duration retryBackoff) {
+        this.aiCategorizationService = aiCategorizationService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+
+        Gauge.builder("aimex.categorization.queue.depth", queue, BlockingQueue::size)
+                .description("Expenses waiting for background categorization")
+                .register(meterRegistry);
+        Gauge.builder("aimex.categorization.waiters", waiters, Map::size)
+                .register(meterRegistry);
+        this.completedCounter = meterRegistry.counter("aimex.categorization.jobs", "outcome", "completed");
+        this.failedCounter = meterRegistry.counter("aimex.categorization.jobs", "outcome", "failed");
+        this.rejectedCounter = meterRegistry.counter("aimex.categorization.jobs", "outcome", "rejected");
+        this.retryCounter = meterRegistry.counter("aimex.categorization.retries");
+        this.lagTimer = Timer.builder("aimex.categorization.lag")
+                .description("Time from enqueue to categorization result")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("categorizer-" + i).start(this::runLoop));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        waiterExecutor.shutdown();
+    }
+
+    public Executor waiterExecutor() {
+        return waiterExecutor;
+    }
+
+    // false when the queue is full; the caller is expected to categorize inline instead
+    public boolean submit(String userId, Expense expense, Completion completion) {
+        boolean accepted = queue.offer(new Job(userId, expense, completion, System.nanoTime()));
+        if (!accepted) {
+            rejectedCounter.increment();
+        }
+        return accepted;
+    }
+
+    // every call must be paired with either a completion or a forget
+    public CompletableFuture<Expense> awaitCompletion(String expenseId) {
+        return waiters.compute(expenseId, (id, existing) -> {
+            Waiter waiter = existing != null ? existing : new Waiter();
+            waiter.callers++;
+            return waiter;
+        }).future;
+    }
+
+    public void notifyCompleted(Expense expense) {
+        Waiter waiter = waiters.remove(expense.getId());
+        if (waiter != null) {
+            waiter.future.complete(expense);
+        }
+    }
+
+    // a timed-out caller gives up its share; the waiter is dropped once no caller is left on it
+    public void forget(String expenseId, CompletableFuture<Expense> future) {
+        waiters.computeIfPresent(expenseId, (id, waiter) -> {
+            if (waiter.future != future) {
+                return waiter;
+            }
+            return --waiter.callers > 0 ? waiter : null;
+        });
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                Job job = queue.poll(1, TimeUnit.SECONDS);
+                if (job != null) {
+                    process(job);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                LOG.warn("Background categorization job failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void process(Job job) throws InterruptedException {
+        Optional<AiCategorySuggestion> suggestion = Optional.empty();
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                suggestion = aiCategorizationService.suggestCategoryOrThrow(job.userId(), job.expense());
+                break;
+            } catch (AiCategorizationException ex) {
+                if (attempt == maxAttempts) {
+                    LOG.warn("Giving up categorizing expense {} after {} attempts: {}",
+                            job.expense().getId(), attempt, ex.getMessage());
+                    break;
+                }
+                retryCounter.increment();
+                Thread.sleep(retryBackoff.multipliedBy(attempt).toMillis());
+            }
+        }
+
+        lagTimer.record(System.nanoTime() - job.enqueuedAt(), TimeUnit.NANOSECONDS);
+        (suggestion.isPresent() ? completedCounter : failedCounter).increment();
+        job.completion().accept(job.userId(), job.expense().getId(), suggestion);
+    }
+}
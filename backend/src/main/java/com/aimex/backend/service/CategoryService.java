@@ -3,42 +3,138 @@ package com.aimex.backend.service;
 
 import com.aimex.backend.models.Category;
 import com.aimex.backend.repository.CategoryRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
-    public CategoryService(CategoryRepository categoryRepository) {
+    private final MerchantKnowledgeBase knowledgeBase;
+    private final DataVersionService dataVersionService;
+
+    private static final int RESYNC_BATCH = 1000;
+
+    // Reads and write-path validation come from a per-user snapshot tagged with the user's data version.
+    // CRUD on this node invalidates it; resync() drops snapshots whose version moved on another node,
+    // and only a snapshot miss goes to the database.
+    private final LoadingCache<String, CategorySnapshot> snapshots;
+
+    public CategoryService(CategoryRepository categoryRepository,
+                           MerchantKnowledgeBase knowledgeBase,
+                           DataVersionService dataVersionService,
+                           MeterRegistry meterRegistry,
+                           @Value("${aimex.category-cache.max-categories:200000}") long maxCachedCategories,
+                           @Value("${aimex.category-cache.ttl:5m}") Duration ttl) {
         this.categoryRepository = categoryRepository;
+        this.knowledgeBase = knowledgeBase;
+        this.dataVersionService = dataVersionService;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumWeight(maxCachedCategories)
+                .weigher((String userId, CategorySnapshot snapshot) -> snapshot.size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                // version first: a write landing during the load leaves the snapshot behind, never ahead
+                .build(userId -> CategorySnapshot.of(dataVersionService.version(userId), categoryRepository.findByUserId(userId)));
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "category-snapshots");
+    }
+
+    public CategorySnapshot getSnapshot(String userId) {
+        return snapshots.get(userId);
     }
 
-    public void validateCategory(String categoryId, String userId) {
+    public Category validateCategory(String categoryId, String userId) {
         if (categoryId == null) {
             throw new IllegalArgumentException("Category ID cannot be null");
         }
+        return getCategoryById(userId, categoryId)
+                .orElseThrow(() -> new IllegalArgumentException("Category Not Found with ID: " + categoryId));
+    }
 
-        Optional<Category> category = getCategoryById(userId, categoryId);
-        if (category.isEmpty()) {
-            throw new IllegalArgumentException("Category Not Found with ID: " + categoryId);
+    // the subset of categoryIds that exist for the user; only ids missing from the snapshot are looked up
+    public Set<String> existingIds(String userId, Collection<String> categoryIds) {
+        Set<String> cached = getSnapshot(userId).ids();
+        Set<String> existing = new HashSet<>();
+        List<String> missing = new ArrayList<>();
+        for (String categoryId : categoryIds) {
+            if (cached.contains(categoryId)) {
+                existing.add(categoryId);
+            } else {
+                missing.add(categoryId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return existing;
+        }
+
+        boolean found = false;
+        for (Category category : categoryRepository.findAllById(missing)) {
+            if (userId.equals(category.getUserId())) {
+                existing.add(category.getId());
+                found = true;
+            }
+        }
+        if (found) {
+            snapshots.invalidate(userId);
+        }
+        return existing;
+    }
+
+    // drops snapshots of users whose data version moved, e.g. a category deleted on another node
+    @Scheduled(fixedDelayString = "${aimex.category-cache.resync:30s}")
+    public void resync() {
+        List<String> userIds = List.copyOf(snapshots.asMap().keySet());
+        for (int from = 0; from < userIds.size(); from += RESYNC_BATCH) {
+            List<String> batch = userIds.subList(from, Math.min(userIds.size(), from + RESYNC_BATCH));
+            Map<String, Long> versions = dataVersionService.versions(batch);
+            for (String userId : batch) {
+                CategorySnapshot cached = snapshots.getIfPresent(userId);
+                if (cached != null && cached.version() != versions.getOrDefault(userId, 0L)) {
+                    snapshots.invalidate(userId);
+                }
+            }
         }
     }
 
     public List<Category> getCategoriesByUser(String userId) {
-        return categoryRepository.findByUserId(userId);
+        return getSnapshot(userId).categories();
     }
 
     public Optional<Category> getCategoryById(String userId, String categoryId) {
-        return categoryRepository.findById(categoryId)
-                .filter(category -> category.getUserId().equals(userId));
+        Optional<Category> cached = getSnapshot(userId).findById(categoryId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        // a miss may only mean the snapshot predates a create on another node
+        Optional<Category> stored = categoryRepository.findById(categoryId)
+                .filter(category -> userId.equals(category.getUserId()));
+        if (stored.isPresent()) {
+            snapshots.invalidate(userId);
+        }
+        return stored;
     }
 
     public Category createCategory(String userId, Category category) {
         category.setUserId(userId);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        snapshots.invalidate(userId);
+        dataVersionService.bump(userId);
+        knowledgeBase.invalidateUser(userId);
+        return saved;
     }
 
     public Category updateCategory(String userId, String id, Category category) {
@@ -48,7 +144,11 @@ public class CategoryService {
         }
         category.setId(id);
         category.setUserId(userId);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        snapshots.invalidate(userId);
+        dataVersionService.bump(userId);
+        knowledgeBase.onCategoryRenamed(userId, id, saved.getName());
+        return saved;
     }
 
     public void deleteCategory(String userId, String id) {
@@ -57,5 +157,8 @@ public class CategoryService {
             throw new RuntimeException("Category not found or does not belong to this user");
         }
         categoryRepository.delete(existing.get());
+        snapshots.invalidate(userId);
+        dataVersionService.bump(userId);
+        knowledgeBase.onCategoryDeleted(userId, id);
     }
 }
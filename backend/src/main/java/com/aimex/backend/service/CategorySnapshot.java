@@ -0,0 +1,77 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Category;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable view of one user's categories as of {@link #version()}. The categories themselves
+ * are shared with every reader of the snapshot and must not be modified.
+ */
+public final class CategorySnapshot {
+
+    private final long version;
+    private final List<Category> categories;
+    private final Map<String, Category> byId;
+    private final Map<String, Category> byName;
+
+    private CategorySnapshot(long version, List<Category> categories) {
+        this.version = version;
+        this.categories = List.copyOf(categories);
+
+        Map<String, Category> ids = new LinkedHashMap<>();
+        Map<String, Category> names = new LinkedHashMap<>();
+        for (Category category : this.categories) {
+            ids.put(category.getId(), category);
+            if (category.getName() != null) {
+                // first one wins on duplicate names, matching the old linear scan
+                names.putIfAbsent(nameKey(category.getName()), category);
+            }
+        }
+        this.byId = Collections.unmodifiableMap(ids);
+        this.byName = Collections.unmodifiableMap(names);
+    }
+
+    public static CategorySnapshot of(long version, List<Category> categories) {
+        return new CategorySnapshot(version, categories);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public List<Category> categories() {
+        return categories;
+    }
+
+    public Set<String> ids() {
+        return byId.keySet();
+    }
+
+    public boolean isEmpty() {
+        return categories.isEmpty();
+    }
+
+    public int size() {
+        return categories.size();
+    }
+
+    public Optional<Category> findById(String categoryId) {
+        return Optional.ofNullable(byId.get(categoryId));
+    }
+
+    // case-insensitive, as category names come back from the model in arbitrary case
+    public Optional<Category> findByName(String name) {
+        return name == null ? Optional.empty() : Optional.ofNullable(byName.get(nameKey(name)));
+    }
+
+    private static String nameKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,65 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.service.dto.BudgetAlertDTO;
+import com.aimex.backend.service.dto.CategoryBreakdownDTO;
+import com.aimex.backend.service.dto.DashboardDTO;
+import com.aimex.backend.service.dto.MonthlySummaryDTO;
+import com.aimex.backend.service.dto.TrendPointDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Everything the dashboard screen shows, in one call. The four reads are independent, so they run
+ * side by side in a {@link DeadlineScope}: the response takes as long as the slowest read, not
+ * the sum of all four. If one read fails or {@code aimex.dashboard.deadline} passes, the others
+ * are cancelled.
+ */
+@Service
+public class DashboardService {
+
+    private final AnalyticsService analyticsService;
+    private final BudgetService budgetService;
+    private final Duration deadline;
+
+    public DashboardService(AnalyticsService analyticsService,
+                            BudgetService budgetService,
+                            @Value("${aimex.dashboard.deadline:2s}") Duration deadline) {
+        this.analyticsService = analyticsService;
+        this.budgetService = budgetService;
+        this.deadline = deadline;
+    }
+
+    public DashboardDTO getDashboard(String userId,
+                                     LocalDate from,
+                                     LocalDate to,
+                                     TrendGranularity granularity,
+                                     int periods,
+                                     String monthYear) {
+        try (DeadlineScope scope = new DeadlineScope(deadline)) {
+            Supplier<MonthlySummaryDTO> summary = scope.fork(() -> analyticsService.getMonthlySummary(userId));
+            Supplier<List<CategoryBreakdownDTO>> categories = scope.fork(() -> analyticsService.getCategoryBreakdown(userId, from, to));
+            Supplier<List<TrendPointDTO>> trends = scope.fork(() -> analyticsService.getTrends(userId, granularity, periods));
+            Supplier<List<BudgetAlertDTO>> alerts = scope.fork(() -> budgetService.getBudgetAlerts(userId, monthYear));
+
+            scope.join();
+            return new DashboardDTO(summary.get(), categories.get(), trends.get(), alerts.get());
+        } catch (TimeoutException ex) {
+            throw new DashboardTimeoutException("Dashboard was not ready within " + deadline.toMillis() + " ms");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Dashboard read failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the dashboard", ex);
+        }
+    }
+}
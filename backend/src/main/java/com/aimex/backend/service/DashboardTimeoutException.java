@@ -0,0 +1,12 @@
+package com.aimex.backend.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class DashboardTimeoutException extends RuntimeException {
+
+    public DashboardTimeoutException(String message) {
+        super(message);
+    }
+}
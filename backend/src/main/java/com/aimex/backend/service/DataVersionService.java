@@ -0,0 +1,123 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.UserDataVersion;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user data version behind conditional GETs on the analytics and budget endpoints. Every
+ * expense, category and budget write bumps the version in Mongo <em>after</em> the write lands,
+ * so a tag read before computing a result never describes older data than the result holds.
+ * Expense writes also bump a separate expense version that {@link ExpenseColumnStore} checks.
+ * Tags also carry the current date because "this month" and "last 12 weeks" move on their own.
+ * Results are cached per (userId, tag, endpoint, params); entries for old tags simply age out.
+ */
+@Service
+public class DataVersionService {
+
+    private final MongoTemplate mongoTemplate;
+    private final AsyncCache<ResultKey, Object> results;
+
+    public DataVersionService(MongoTemplate mongoTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${aimex.result-cache.max-entries:20000}") long maxEntries,
+                              @Value("${aimex.result-cache.ttl:10m}") Duration ttl) {
+        this.mongoTemplate = mongoTemplate;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, results.synchronous(), "read-results");
+    }
+
+    public long version(String userId) {
+        Query query = Query.query(Criteria.where("_id").is(userId));
+        query.fields().include("version");
+        UserDataVersion stored = mongoTemplate.findOne(query, UserDataVersion.class);
+        return stored == null ? 0 : stored.getVersion();
+    }
+
+    // opaque tag for the user's data as of now; used as the strong ETag and as part of the cache key
+    public String tag(String userId) {
+        return version(userId) + "-" + LocalDate.now().toEpochDay();
+    }
+
+    // one query for many users; users that never wrote are absent
+    public Map<String, Long> versions(Collection<String> userIds) {
+        Query query = Query.query(Criteria.where("_id").in(userIds));
+        query.fields().include("version");
+        return mongoTemplate.find(query, UserDataVersion.class).stream()
+                .collect(Collectors.toMap(UserDataVersion::getId, UserDataVersion::getVersion));
+    }
+
+    public long expenseVersion(String userId) {
+        Query query = Query.query(Criteria.where("_id").is(userId));
+        query.fields().include("expenseVersion");
+        UserDataVersion stored = mongoTemplate.findOne(query, UserDataVersion.class);
+        return stored == null ? 0 : stored.getExpenseVersion();
+    }
+
+    public void bump(String userId) {
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(userId)),
+                new Update().inc("version", 1), UserDataVersion.class);
+    }
+
+    // bumps both versions and returns the new expense version, so the writer can patch its columns in step
+    public long bumpExpenses(String userId) {
+        UserDataVersion updated = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(userId)),
+                new Update().inc("version", 1).inc("expenseVersion", 1),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), UserDataVersion.class);
+        return updated == null ? 0 : updated.getExpenseVersion();
+    }
+
+    /**
+     * Concurrent misses for the same key are computed once. The cache only installs a future
+     * under its lock; the first caller computes outside it and the others wait on the future, so
+     * a slow computation never blocks unrelated keys that hash to the same bin. A failed
+     * computation is dropped from the cache and rethrown to every caller waiting on it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T cached(String userId, String tag, String endpoint, String params, Supplier<T> compute) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> result = results.get(new ResultKey(userId, tag, endpoint, params),
+                (key, executor) -> created);
+        if (result == created) {
+            try {
+                created.complete(compute.get());
+            } catch (RuntimeException | Error ex) {
+                created.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return (T) result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record ResultKey(String userId, String tag, String endpoint, String params) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.aimex.backend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Fork/join scope with the shutdown-on-failure semantics of {@code StructuredTaskScope}, which is
+ * still a preview API: every subtask runs on its own virtual thread, {@link #join()} waits for all
+ * of them under one deadline, and the first failure or the deadline cancels whatever is still
+ * running. Closing the scope waits for cancelled subtasks to exit, so none outlive it.
+ */
+final class DeadlineScope implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorCompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+    private final List<Future<Object>> subtasks = new ArrayList<>();
+    private final long deadline;
+
+    DeadlineScope(Duration timeout) {
+        this.deadline = System.nanoTime() + timeout.toNanos();
+    }
+
+    // the supplier may only be called after a successful join()
+    @SuppressWarnings("unchecked")
+    <T> Supplier<T> fork(Callable<? extends T> task) {
+        Future<Object> subtask = completion.submit(task::call);
+        subtasks.add(subtask);
+        return () -> (T) subtask.resultNow();
+    }
+
+    void join() throws InterruptedException, ExecutionException, TimeoutException {
+        for (int completed = 0; completed < subtasks.size(); completed++) {
+            long remaining = deadline - System.nanoTime();
+            Future<Object> next = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                cancelAll();
+                throw new TimeoutException();
+            }
+            if (next.state() == Future.State.FAILED) {
+                cancelAll();
+                throw new ExecutionException(next.exceptionNow());
+            }
+        }
+    }
+
+    private void cancelAll() {
+        for (Future<Object> subtask : subtasks) {
+            subtask.cancel(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.close();
+    }
+}
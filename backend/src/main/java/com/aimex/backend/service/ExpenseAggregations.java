@@ -0,0 +1,22 @@
+package com.aimex.backend.service;
+
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+
+import java.time.ZoneId;
+
+/**
+ * Shared aggregation expressions for the expense pipelines. {@code LocalDate}s are stored
+ * as midnight in the JVM zone, so date parts have to be extracted in that zone too.
+ */
+final class ExpenseAggregations {
+
+    private ExpenseAggregations() {
+    }
+
+    static AggregationExpression formatDate(String field, String format) {
+        return DateOperators.dateOf(field)
+                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                .toString(format);
+    }
+}
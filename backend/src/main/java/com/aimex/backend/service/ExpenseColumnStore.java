@@ -0,0 +1,166 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * In-memory {@link ExpenseColumns} for users whose analytics are being read. A user's columns are
+ * loaded from Mongo on first read and are patched in place by expense writes on this node. Before
+ * serving, they are checked against the expense version in Mongo, so writes made on other nodes
+ * trigger a reload. Columns are weighed by their array sizes and evicted once
+ * {@code aimex.columnar.max-memory} is used.
+ * Users with more than {@code aimex.columnar.max-rows-per-user} expenses stay on the Mongo path.
+ */
+@Component
+public class ExpenseColumnStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final DataVersionService dataVersionService;
+    private final boolean enabled;
+    private final int maxRowsPerUser;
+
+    private final Cache<String, ExpenseColumns> columns;
+    // userId -> expense version at which the user was found too large to hold
+    private final Cache<String, Long> oversized;
+
+    public ExpenseColumnStore(MongoTemplate mongoTemplate,
+                              DataVersionService dataVersionService,
+                              MeterRegistry meterRegistry,
+                              @Value("${aimex.columnar.enabled:true}") boolean enabled,
+                              @Value("${aimex.columnar.max-memory:256MB}") DataSize maxMemory,
+                              @Value("${aimex.columnar.max-rows-per-user:500000}") int maxRowsPerUser) {
+        this.mongoTemplate = mongoTemplate;
+        this.dataVersionService = dataVersionService;
+        this.enabled = enabled;
+        this.maxRowsPerUser = maxRowsPerUser;
+        this.columns = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((String userId, ExpenseColumns value) -> (int) Math.min(Integer.MAX_VALUE, value.estimatedBytes()))
+                .recordStats()
+                .build();
+        this.oversized = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, columns, "expense-columns");
+    }
+
+    /**
+     * Runs {@code query} against the user's current columns, or returns empty when they cannot be
+     * held in memory and the caller should fall back to Mongo.
+     */
+    public <T> Optional<T> read(String userId, Function<ExpenseColumns, T> query) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long version = dataVersionService.expenseVersion(userId);
+        if (Long.valueOf(version).equals(oversized.getIfPresent(userId))) {
+            return Optional.empty();
+        }
+
+        ExpenseColumns current = columns.get(userId, this::load);
+        if (current != null && isStale(current, version)) {
+            columns.asMap().remove(userId, current);
+            current = columns.get(userId, this::load);
+        }
+        if (current == null) {
+            oversized.put(userId, version);
+            return Optional.empty();
+        }
+
+        synchronized (current) {
+            return Optional.of(query.apply(current));
+        }
+    }
+
+    public void recordSaved(String userId, Collection<Expense> saved, long version) {
+        patch(userId, version, current -> {
+            for (Expense expense : saved) {
+                if (!current.upsert(expense)) {
+                    return false;
+                }
+            }
+            return current.size() <= maxRowsPerUser;
+        });
+    }
+
+    public void recordDeleted(String userId, String expenseId, long version) {
+        patch(userId, version, current -> {
+            current.remove(expenseId);
+            return true;
+        });
+    }
+
+    // applies one write's change if the columns are exactly one version behind it
+    private void patch(String userId, long version, Predicate<ExpenseColumns> change) {
+        ExpenseColumns current = columns.getIfPresent(userId);
+        if (current == null) {
+            return;
+        }
+
+        boolean keep;
+        long bytesBefore;
+        synchronized (current) {
+            if (current.version() >= version) {
+                // loaded after this write landed, so it is already in there
+                return;
+            }
+            bytesBefore = current.estimatedBytes();
+            // a gap means another node wrote in between; reload on the next read
+            keep = current.version() == version - 1 && change.test(current);
+            if (keep) {
+                current.version(version);
+            }
+        }
+
+        if (!keep) {
+            columns.asMap().remove(userId, current);
+        } else if (current.estimatedBytes() != bytesBefore) {
+            columns.asMap().replace(userId, current, current);   // re-weigh after the arrays grew
+        }
+    }
+
+    private boolean isStale(ExpenseColumns current, long version) {
+        synchronized (current) {
+            return current.version() < version;
+        }
+    }
+
+    // the version is read before the expenses, so the columns hold at least what that version describes
+    private ExpenseColumns load(String userId) {
+        long version = dataVersionService.expenseVersion(userId);
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        if (mongoTemplate.count(query, Expense.class) > maxRowsPerUser) {
+            return null;
+        }
+
+        query.fields().include("amount", "date", "categoryId");
+        ExpenseColumns loaded = new ExpenseColumns(version, 0);
+        try (Stream<Expense> expenses = mongoTemplate.stream(query, Expense.class)) {
+            Iterator<Expense> iterator = expenses.iterator();
+            while (iterator.hasNext()) {
+                if (!loaded.append(iterator.next()) || loaded.size() > maxRowsPerUser) {
+                    return null;
+                }
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,281 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One user's expenses as parallel primitive columns: amount in minor units, epoch day and a
+ * category ordinal into a per-user dictionary (ordinal 0 is "no category"). Rows are keyed by
+ * their ObjectId, split into a long and an int, so patches are idempotent upserts and deletes.
+ * An open-addressing table of row numbers finds a row by id in constant time, so patching k rows
+ * costs O(k) however many rows the user has. Row order carries no meaning; deletes swap the last
+ * row into the hole.
+ * Not thread-safe on its own; {@link ExpenseColumnStore} guards every instance with its monitor.
+ */
+final class ExpenseColumns {
+
+    static final int NO_DATE = Integer.MIN_VALUE;
+    static final int MAX_CATEGORIES = Short.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 64;
+    // object headers, the dictionary map and its entries, per category
+    private static final int CATEGORY_BYTES = 120;
+
+    private long version;
+    private int size;
+    private long[] idHigh;
+    private int[] idLow;
+    private long[] amounts;
+    private int[] epochDays;
+    private short[] categories;
+    // row + 1 per slot, 0 for empty; linear probing, kept at most half full
+    private int[] slots;
+
+    private final Map<String, Short> ordinals = new HashMap<>();
+    private String[] categoryIds = new String[8];
+    private int categoryCount = 1;
+
+    ExpenseColumns(long version, int capacity) {
+        this.version = version;
+        int initial = Math.max(INITIAL_CAPACITY, capacity);
+        this.idHigh = new long[initial];
+        this.idLow = new int[initial];
+        this.amounts = new long[initial];
+        this.epochDays = new int[initial];
+        this.categories = new short[initial];
+        this.slots = new int[Integer.highestOneBit(initial - 1) << 2];
+    }
+
+    long version() {
+        return version;
+    }
+
+    void version(long version) {
+        this.version = version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int categoryCount() {
+        return categoryCount;
+    }
+
+    // null for ordinal 0
+    String categoryId(int ordinal) {
+        return categoryIds[ordinal];
+    }
+
+    long estimatedBytes() {
+        return 200L + (long) idHigh.length * (8 + 4 + 8 + 4 + 2) + (long) slots.length * 4
+                + (long) categoryIds.length * CATEGORY_BYTES;
+    }
+
+    static boolean trackable(Expense expense) {
+        return expense.getId() != null && ObjectId.isValid(expense.getId());
+    }
+
+    // false when the row cannot be represented (non-ObjectId id or too many categories)
+    boolean upsert(Expense expense) {
+        return put(expense, true);
+    }
+
+    // bulk load from Mongo, where ids are already unique
+    boolean append(Expense expense) {
+        return put(expense, false);
+    }
+
+    private boolean put(Expense expense, boolean replaceExisting) {
+        if (!trackable(expense)) {
+            return false;
+        }
+        short category = ordinal(expense.getCategoryId());
+        if (category < 0) {
+            return false;
+        }
+
+        byte[] id = new ObjectId(expense.getId()).toByteArray();
+        long high = high(id);
+        int low = low(id);
+        int row = replaceExisting ? find(high, low) : -1;
+        if (row < 0) {
+            ensureCapacity(size + 1);
+            row = size++;
+            idHigh[row] = high;
+            idLow[row] = low;
+            index(row);
+        }
+        amounts[row] = minorUnits(expense.getAmount());
+        epochDays[row] = expense.getDate() == null ? NO_DATE : (int) expense.getDate().toEpochDay();
+        categories[row] = category;
+        return true;
+    }
+
+    void remove(String expenseId) {
+        if (expenseId == null || !ObjectId.isValid(expenseId)) {
+            return;
+        }
+        byte[] id = new ObjectId(expenseId).toByteArray();
+        int slot = slotOf(high(id), low(id));
+        if (slot < 0) {
+            return;
+        }
+        int row = slots[slot] - 1;
+        unindex(slot);
+        int last = --size;
+        if (row == last) {
+            return;
+        }
+        slots[slotOf(idHigh[last], idLow[last])] = row + 1;
+        idHigh[row] = idHigh[last];
+        idLow[row] = idLow[last];
+        amounts[row] = amounts[last];
+        epochDays[row] = epochDays[last];
+        categories[row] = categories[last];
+    }
+
+    /**
+     * Adds each row dated within [fromDay, toDay] to {@code totals} and {@code counts}, indexed by
+     * category ordinal. Undated rows only count when {@code includeUndated} is set.
+     */
+    void sumByCategory(int fromDay, int toDay, boolean includeUndated, long[] totals, long[] counts) {
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day == NO_DATE ? includeUndated : day >= fromDay && day <= toDay) {
+                totals[categories[i]] += amounts[i];
+                counts[categories[i]]++;
+            }
+        }
+    }
+
+    /**
+     * Adds each row to the period it falls in, where period p covers
+     * [boundaries[p], boundaries[p + 1]). Rows outside every period are skipped.
+     */
+    void sumByPeriod(int[] boundaries, long[] totals) {
+        int first = boundaries[0];
+        int end = boundaries[boundaries.length - 1];
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day < first || day >= end) {
+                continue;
+            }
+            int period = Arrays.binarySearch(boundaries, day);
+            totals[period >= 0 ? period : -period - 2] += amounts[i];
+        }
+    }
+
+    static long minorUnits(Double amount) {
+        return amount == null ? 0 : Math.round(amount * 100);
+    }
+
+    static double fromMinorUnits(long minor) {
+        return minor / 100.0;
+    }
+
+    private short ordinal(String categoryId) {
+        if (categoryId == null) {
+            return 0;
+        }
+        Short known = ordinals.get(categoryId);
+        if (known != null) {
+            return known;
+        }
+        if (categoryCount >= MAX_CATEGORIES) {
+            return -1;
+        }
+        if (categoryCount == categoryIds.length) {
+            categoryIds = Arrays.copyOf(categoryIds, categoryIds.length * 2);
+        }
+        short ordinal = (short) categoryCount++;
+        categoryIds[ordinal] = categoryId;
+        ordinals.put(categoryId, ordinal);
+        return ordinal;
+    }
+
+    private int find(long high, int low) {
+        int slot = slotOf(high, low);
+        return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    private int slotOf(long high, int low) {
+        int mask = slots.length - 1;
+        for (int slot = hash(high, low) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            if (idHigh[row] == high && idLow[row] == low) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void index(int row) {
+        if ((size << 1) > slots.length) {
+            slots = new int[slots.length << 1];
+            for (int i = 0; i < size; i++) {
+                place(i);
+            }
+        } else {
+            place(row);
+        }
+    }
+
+    private void place(int row) {
+        int mask = slots.length - 1;
+        int slot = hash(idHigh[row], idLow[row]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+    }
+
+    // backward-shift deletion, so probes never need tombstones
+    private void unindex(int hole) {
+        int mask = slots.length - 1;
+        slots[hole] = 0;
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            int home = hash(idHigh[row], idLow[row]) & mask;
+            // the entry may fill the hole only if the hole lies on its probe path from home
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                slots[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private static int hash(long high, int low) {
+        long mixed = (high ^ ((long) low << 32 | (low & 0xFFFFFFFFL))) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= idHigh.length) {
+            return;
+        }
+        int capacity = Math.max(required, idHigh.length + (idHigh.length >> 1));
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+    }
+
+    private static long high(byte[] id) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (id[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int low(byte[] id) {
+        return ((id[8] & 0xFF) << 24) | ((id[9] & 0xFF) << 16) | ((id[10] & 0xFF) << 8) | (id[11] & 0xFF);
+    }
+}
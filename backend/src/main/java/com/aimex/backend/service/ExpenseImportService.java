@@ -0,0 +1,157 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.service.dto.BulkImportErrorDTO;
+import com.aimex.backend.service.dto.BulkImportResultDTO;
+import com.aimex.backend.service.dto.ImportProgressDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams an NDJSON or CSV upload through {@link ExpenseIngestionService} in fixed-size chunks.
+ * Rows are pulled from the request only after the previous chunk has been written and its
+ * progress line flushed, so memory use depends on the chunk size rather than the upload size.
+ */
+@Service
+public class ExpenseImportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseImportService.class);
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format fromContentType(String contentType) {
+            if (contentType != null && contentType.toLowerCase().contains("csv")) {
+                return CSV;
+            }
+            return NDJSON;
+        }
+    }
+
+    private final ExpenseIngestionService ingestionService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader ndjsonReader;
+    private final ObjectReader csvReader;
+    private final int chunkSize;
+
+    public ExpenseImportService(ExpenseIngestionService ingestionService,
+                                ObjectMapper objectMapper,
+                                @Value("${aimex.import.chunk-size:500}") int chunkSize) {
+        this.ingestionService = ingestionService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.ndjsonReader = objectMapper.readerFor(Expense.class);
+
+        CsvMapper csvMapper = CsvMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(CsvParser.Feature.TRIM_SPACES)
+                .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+                .build();
+        this.csvReader = csvMapper.readerFor(Expense.class)
+                .with(CsvSchema.emptySchema().withHeader());
+    }
+
+    public void importStream(String userId, InputStream in, Format format, OutputStream out) throws IOException {
+        ObjectReader reader = format == Format.CSV ? csvReader : ndjsonReader;
+
+        int chunkNumber = 0;
+        long rowsRead = 0;
+        long rowsImported = 0;
+        List<Expense> chunk = new ArrayList<>(chunkSize);
+        List<BulkImportErrorDTO> parseErrors = new ArrayList<>();
+
+        try (MappingIterator<Expense> rows = reader.readValues(in)) {
+            while (true) {
+                Expense expense;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    expense = rows.nextValue();
+                } catch (JsonMappingException ex) {
+                    // a row with bad values; the parser can carry on with the next one
+                    parseErrors.add(new BulkImportErrorDTO((int) rowsRead, ex.getOriginalMessage()));
+                    rowsRead++;
+                    continue;
+                }
+
+                chunk.add(expense);
+                rowsRead++;
+
+                if (chunk.size() == chunkSize) {
+                    rowsImported += flushChunk(userId, ++chunkNumber, rowsRead, rowsImported, chunk, parseErrors, out);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            // malformed input: keep what was already imported and report where parsing stopped
+            LOG.warn("Expense import for user {} stopped after {} rows: {}", userId, rowsRead, ex.getOriginalMessage());
+            if (!chunk.isEmpty()) {
+                rowsImported += flushChunk(userId, ++chunkNumber, rowsRead, rowsImported, chunk, parseErrors, out);
+            }
+            writeLine(out, new ImportProgressDTO(chunkNumber, rowsRead, rowsImported, parseErrors, true,
+                    "Could not parse row " + rowsRead + ": " + ex.getOriginalMessage()));
+            return;
+        }
+
+        if (!chunk.isEmpty() || !parseErrors.isEmpty()) {
+            rowsImported += flushChunk(userId, ++chunkNumber, rowsRead, rowsImported, chunk, parseErrors, out);
+        }
+        writeLine(out, new ImportProgressDTO(chunkNumber, rowsRead, rowsImported, List.of(), true, null));
+    }
+
+    // writes the chunk, emits its progress line and clears the buffers for the next one
+    private int flushChunk(String userId, int chunkNumber, long rowsRead, long importedSoFar,
+                           List<Expense> chunk, List<BulkImportErrorDTO> parseErrors, OutputStream out) throws IOException {
+        long firstRow = rowsRead - chunk.size() - parseErrors.size();
+        BulkImportResultDTO result = ingestionService.ingest(userId, chunk);
+
+        // chunk indexes skip rows that failed to parse, so map them back to upload positions
+        List<BulkImportErrorDTO> errors = new ArrayList<>(parseErrors);
+        for (BulkImportErrorDTO error : result.errors()) {
+            errors.add(new BulkImportErrorDTO(uploadIndex(firstRow, error.index(), parseErrors), error.message()));
+        }
+        errors.sort((a, b) -> Integer.compare(a.index(), b.index()));
+
+        writeLine(out, new ImportProgressDTO(chunkNumber, rowsRead, importedSoFar + result.imported(), errors, false, null));
+
+        chunk.clear();
+        parseErrors.clear();
+        return result.imported();
+    }
+
+    // upload position of the chunkIndex-th parsed row, counting the rows that failed to parse before it
+    static int uploadIndex(long firstRow, int chunkIndex, List<BulkImportErrorDTO> parseErrors) {
+        long index = firstRow + chunkIndex;
+        for (BulkImportErrorDTO skipped : parseErrors) {
+            if (skipped.index() <= index) {
+                index++;
+            }
+        }
+        return (int) index;
+    }
+
+    private void writeLine(OutputStream out, ImportProgressDTO progress) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(progress));
+        out.write('\n');
+        out.flush();
+    }
+}
@@ -0,0 +1,153 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import com.aimex.backend.service.dto.BulkImportErrorDTO;
+import com.aimex.backend.service.dto.BulkImportResultDTO;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Group-commit ingestion for bulk imports. Categories are validated once against the database
+ * with one query, uncategorized rows go through one batched AI pass, recurrence state is loaded
+ * once per merchant, and the rows are written with one unordered bulk insert. Recurrence state is
+ * then written once per merchant for the rows that were actually inserted.
+ * Rows that fail validation or the insert are reported individually; the rest of the batch is kept.
+ */
+@Service
+public class ExpenseIngestionService {
+
+    private final CategoryService categoryService;
+    private final AiCategorizationService aiCategorizationService;
+    private final ExpenseRollupService rollupService;
+    private final RecurrenceEngine recurrenceEngine;
+    private final AnomalyDetector anomalyDetector;
+    private final DataVersionService dataVersionService;
+    private final ExpenseColumnStore columnStore;
+    private final MongoTemplate mongoTemplate;
+
+    public ExpenseIngestionService(CategoryService categoryService,
+                                   AiCategorizationService aiCategorizationService,
+                                   ExpenseRollupService rollupService,
+                                   RecurrenceEngine recurrenceEngine,
+                                   AnomalyDetector anomalyDetector,
+                                   DataVersionService dataVersionService,
+                                   ExpenseColumnStore columnStore,
+                                   MongoTemplate mongoTemplate) {
+        this.categoryService = categoryService;
+        this.aiCategorizationService = aiCategorizationService;
+        this.rollupService = rollupService;
+        this.recurrenceEngine = recurrenceEngine;
+        this.anomalyDetector = anomalyDetector;
+        this.dataVersionService = dataVersionService;
+        this.columnStore = columnStore;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public BulkImportResultDTO ingest(String userId, List<Expense> expenses) {
+        List<BulkImportErrorDTO> errors = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        List<Expense> rows = new ArrayList<>();
+
+        Set<String> requestedCategoryIds = new HashSet<>();
+        for (Expense expense : expenses) {
+            if (expense != null && expense.getCategoryId() != null) {
+                requestedCategoryIds.add(expense.getCategoryId());
+            }
+        }
+        Set<String> categoryIds = categoryService.existingIds(userId, requestedCategoryIds);
+
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense expense = expenses.get(i);
+            if (expense == null) {
+                errors.add(new BulkImportErrorDTO(i, "Expense cannot be null"));
+                continue;
+            }
+            if (expense.getCategoryId() != null && !categoryIds.contains(expense.getCategoryId())) {
+                errors.add(new BulkImportErrorDTO(i, "Category Not Found with ID: " + expense.getCategoryId()));
+                continue;
+            }
+
+            // ids are assigned up front so insert failures can be matched back to their rows
+            expense.setId(new ObjectId().toHexString());
+            expense.setUserId(userId);
+            expense.setCategorizationStatus(null);
+            if (expense.getDate() == null) {
+                expense.setDate(LocalDate.now());
+            }
+            positions.add(i);
+            rows.add(expense);
+        }
+
+        categorize(userId, rows);
+        recurrenceEngine.flagAll(userId, rows);
+        anomalyDetector.flagAll(userId, rows);
+
+        Set<Integer> failed = insertAll(rows, positions, errors);
+        List<Expense> imported = new ArrayList<>(rows.size() - failed.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (!failed.contains(i)) {
+                imported.add(rows.get(i));
+            }
+        }
+
+        recurrenceEngine.recordImported(userId, imported);
+        anomalyDetector.recordImported(userId, imported);
+        rollupService.recordCreatedAll(imported);
+        if (!imported.isEmpty()) {
+            columnStore.recordSaved(userId, imported, dataVersionService.bumpExpenses(userId));
+        }
+
+        errors.sort(Comparator.comparingInt(BulkImportErrorDTO::index));
+        return new BulkImportResultDTO(expenses.size(), imported.size(), imported, errors);
+    }
+
+    private void categorize(String userId, List<Expense> rows) {
+        List<Expense> uncategorized = rows.stream()
+                .filter(expense -> expense.getCategoryId() == null)
+                .toList();
+
+        List<Optional<AiCategorySuggestion>> suggestions = aiCategorizationService.suggestCategories(userId, uncategorized);
+        for (int i = 0; i < uncategorized.size(); i++) {
+            Expense expense = uncategorized.get(i);
+            suggestions.get(i).ifPresent(suggestion -> {
+                expense.setCategoryId(suggestion.categoryId());
+                expense.setConfidenceScore(suggestion.confidence());
+                expense.setAiReasoning(suggestion.reason());
+            });
+        }
+    }
+
+    // returns the indexes (into rows) that the database rejected
+    private Set<Integer> insertAll(List<Expense> rows, List<Integer> positions, List<BulkImportErrorDTO> errors) {
+        if (rows.isEmpty()) {
+            return Set.of();
+        }
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class)
+                    .insert(rows)
+                    .execute();
+            return Set.of();
+        } catch (BulkOperationException ex) {
+            Set<Integer> failed = new HashSet<>();
+            for (BulkWriteError error : ex.getErrors()) {
+                failed.add(error.getIndex());
+                errors.add(new BulkImportErrorDTO(positions.get(error.getIndex()), error.getMessage()));
+            }
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.ExpenseRollup;
+import com.aimex.backend.repository.ExpenseRollupRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Maintains the per-(userId, month, categoryId) totals in {@code expense_rollups}.
+ * Every expense write is folded in as an atomic {@code $inc}, so dashboard reads touch
+ * a handful of small documents instead of the user's full history.
+ */
+@Service
+public class ExpenseRollupService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseRollupService.class);
+    private static final Duration RECONCILE_LEASE = Duration.ofHours(2);
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final ExpenseRollupRepository rollupRepository;
+    private final DataVersionService dataVersionService;
+    private final BudgetAlertStream budgetAlertStream;
+    private final JobLock jobLock;
+
+    public ExpenseRollupService(MongoTemplate mongoTemplate,
+                                ExpenseRollupRepository rollupRepository,
+                                DataVersionService dataVersionService,
+                                BudgetAlertStream budgetAlertStream,
+                                JobLock jobLock) {
+        this.mongoTemplate = mongoTemplate;
+        this.rollupRepository = rollupRepository;
+        this.dataVersionService = dataVersionService;
+        this.budgetAlertStream = budgetAlertStream;
+        this.jobLock = jobLock;
+    }
+
+    public static String rollupId(String userId, String monthYear, String categoryId) {
+        return userId + ":" + monthYear + ":" + Optional.ofNullable(categoryId).orElse("");
+    }
+
+    public List<ExpenseRollup> getRollups(String userId, Collection<YearMonth> months) {
+        List<String> monthYears = months.stream().map(YearMonth::toString).toList();
+        return rollupRepository.findAllByUserIdAndMonthYearIn(userId, monthYears);
+    }
+
+    public void recordCreated(Expense expense) {
+        apply(expense, 1);
+    }
+
+    public void recordDeleted(Expense expense) {
+        apply(expense, -1);
+    }
+
+    public void recordUpdated(Expense before, Expense after) {
+        boolean sameBucket = Objects.equals(monthOf(before), monthOf(after))
+                && Objects.equals(before.getCategoryId(), after.getCategoryId());
+
+        if (sameBucket && Objects.equals(before.getAmount(), after.getAmount())) {
+            return;
+        }
+
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    // the expense already carries its new category; previousCategoryId is the bucket it leaves
+    public void recordRecategorized(Expense expense, String previousCategoryId) {
+        if (Objects.equals(previousCategoryId, expense.getCategoryId())) {
+            return;
+        }
+        apply(expense, previousCategoryId, -1);
+        apply(expense, expense.getCategoryId(), 1);
+    }
+
+    // folds a whole import into one upsert per touched bucket
+    public void recordCreatedAll(Collection<Expense> expenses) {
+        Map<String, ExpenseRollup> deltas = foldDeltas(expenses);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpenseRollup.class);
+        for (ExpenseRollup delta : deltas.values()) {
+            operations.upsert(Query.query(Criteria.where("_id").is(delta.getId())),
+                    increment(delta.getUserId(), delta.getMonthYear(), delta.getCategoryId(), delta.getTotal(), delta.getCount()));
+        }
+        operations.execute();
+
+        for (ExpenseRollup delta : deltas.values()) {
+            budgetAlertStream.recordSpend(delta.getUserId(), delta.getMonthYear(), delta.getCategoryId(), delta.getTotal());
+        }
+    }
+
+    // rollup id -> summed total/count of the given expenses
+    static Map<String, ExpenseRollup> foldDeltas(Collection<Expense> expenses) {
+        Map<String, ExpenseRollup> deltas = new HashMap<>();
+        for (Expense expense : expenses) {
+            if (expense.getDate() == null) {
+                continue;
+            }
+
+            String monthYear = YearMonth.from(expense.getDate()).toString();
+            ExpenseRollup delta = deltas.computeIfAbsent(rollupId(expense.getUserId(), monthYear, expense.getCategoryId()), id -> {
+                ExpenseRollup rollup = new ExpenseRollup();
+                rollup.setId(id);
+                rollup.setUserId(expense.getUserId());
+                rollup.setMonthYear(monthYear);
+                rollup.setCategoryId(expense.getCategoryId());
+                return rollup;
+            });
+            delta.setTotal(delta.getTotal() + Optional.ofNullable(expense.getAmount()).orElse(0d));
+            delta.setCount(delta.getCount() + 1);
+        }
+        return deltas;
+    }
+
+    private void apply(Expense expense, int sign) {
+        apply(expense, expense.getCategoryId(), sign);
+    }
+
+    private void apply(Expense expense, String categoryId, int sign) {
+        YearMonth month = monthOf(expense);
+        if (month == null) {
+            return;
+        }
+
+        String monthYear = month.toString();
+        double amount = Optional.ofNullable(expense.getAmount()).orElse(0d);
+
+        Query query = Query.query(Criteria.where("_id").is(rollupId(expense.getUserId(), monthYear, categoryId)));
+        mongoTemplate.upsert(query, increment(expense.getUserId(), monthYear, categoryId, sign * amount, sign), ExpenseRollup.class);
+        budgetAlertStream.recordSpend(expense.getUserId(), monthYear, categoryId, sign * amount);
+    }
+
+    private Update increment(String userId, String monthYear, String categoryId, double total, long count) {
+        return new Update()
+                .setOnInsert("userId", userId)
+                .setOnInsert("monthYear", monthYear)
+                .setOnInsert("categoryId", categoryId)
+                .inc("total", total)
+                .inc("count", count);
+    }
+
+    private YearMonth monthOf(Expense expense) {
+        return expense.getDate() == null ? null : YearMonth.from(expense.getDate());
+    }
+
+    /**
+     * Recomputes a user's rollups from the raw expenses with one grouped aggregation and
+     * corrects the stored ones in place. Each correction is conditional on the bucket still
+     * holding the total and count read before the aggregation: drifted buckets are overwritten,
+     * missing ones inserted and empty ones deleted only if no live {@code $inc} touched them in
+     * between. Buckets that did change are left alone and the pass is retried. An {@code $inc}
+     * still in flight when its bucket is corrected can be counted twice; the next reconcile
+     * finds and corrects that.
+     */
+    public void rebuild(String userId) {
+        for (int attempt = 1; attempt <= MAX_REBUILD_ATTEMPTS; attempt++) {
+            if (correct(userId)) {
+                return;
+            }
+        }
+        LOG.warn("Rollups for user {} kept changing during the rebuild; leaving the rest to the next reconcile", userId);
+    }
+
+    // one correction pass; false if any bucket changed underneath it
+    private boolean correct(String userId) {
+        // stored first: a live write after this read makes the conditional correction miss, not clobber it
+        Map<String, ExpenseRollup> stored = new HashMap<>();
+        mongoTemplate.find(Query.query(Criteria.where("userId").is(userId)), ExpenseRollup.class)
+                .forEach(rollup -> stored.put(rollup.getId(), rollup));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId).and("date").ne(null)),
+                Aggregation.project("categoryId", "amount")
+                        .and(ExpenseAggregations.formatDate("date", "%Y-%m")).as("monthYear"),
+                Aggregation.group("monthYear", "categoryId")
+                        .sum("amount").as("total")
+                        .count().as("count")
+        );
+
+        Map<String, ExpenseRollup> expected = new HashMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, Expense.class, Document.class).getMappedResults()) {
+            ExpenseRollup rollup = toRollup(userId, result);
+            expected.put(rollup.getId(), rollup);
+        }
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpenseRollup.class);
+        int inserts = 0;
+        int updates = 0;
+        int removes = 0;
+        for (ExpenseRollup rollup : expected.values()) {
+            ExpenseRollup current = stored.get(rollup.getId());
+            if (current == null) {
+                operations.insert(rollup);
+                inserts++;
+            } else if (!matches(current, rollup)) {
+                operations.updateOne(unchangedSince(current), new Update()
+                        .set("total", rollup.getTotal())
+                        .set("count", rollup.getCount()));
+                updates++;
+            }
+        }
+        for (ExpenseRollup current : stored.values()) {
+            if (!expected.containsKey(current.getId())) {
+                operations.remove(unchangedSince(current));
+                removes++;
+            }
+        }
+        if (inserts + updates + removes == 0) {
+            return true;
+        }
+
+        BulkWriteResult result;
+        boolean insertLost = false;
+        try {
+            result = operations.execute();
+        } catch (BulkOperationException ex) {
+            // a live $inc upserted a bucket we meant to insert
+            result = ex.getResult();
+            insertLost = true;
+        }
+
+        if (result.getInsertedCount() + result.getMatchedCount() + result.getDeletedCount() > 0) {
+            // the rebuild corrected drift that cached analytics were computed from
+            dataVersionService.bump(userId);
+        }
+        return !insertLost && result.getMatchedCount() == updates && result.getDeletedCount() == removes;
+    }
+
+    private static Query unchangedSince(ExpenseRollup read) {
+        return Query.query(Criteria.where("_id").is(read.getId())
+                .and("total").is(read.getTotal())
+                .and("count").is(read.getCount()));
+    }
+
+    private static boolean matches(ExpenseRollup stored, ExpenseRollup expected) {
+        return stored != null
+                && stored.getCount() == expected.getCount()
+                && Math.abs(stored.getTotal() - expected.getTotal()) < 0.005;
+    }
+
+    private ExpenseRollup toRollup(String userId, Document result) {
+        Document key = result.get("_id", Document.class);
+
+        ExpenseRollup rollup = new ExpenseRollup();
+        rollup.setUserId(userId);
+        rollup.setMonthYear(key.getString("monthYear"));
+        rollup.setCategoryId(key.getString("categoryId"));
+        rollup.setId(rollupId(userId, rollup.getMonthYear(), rollup.getCategoryId()));
+        rollup.setTotal(((Number) result.get("total")).doubleValue());
+        rollup.setCount(((Number) result.get("count")).longValue());
+        return rollup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (rollupRepository.count() == 0 && mongoTemplate.exists(new Query(), Expense.class)) {
+            reconcileAll();
+        }
+    }
+
+    @Scheduled(cron = "${aimex.rollups.reconcile-cron:0 30 3 * * *}")
+    public void reconcileAll() {
+        jobLock.runExclusively("rollup-reconcile", RECONCILE_LEASE, this::reconcileUsers);
+    }
+
+    private void reconcileUsers() {
+        Set<String> userIds = new HashSet<>(mongoTemplate.findDistinct(new Query(), "userId", Expense.class, String.class));
+        userIds.addAll(mongoTemplate.findDistinct(new Query(), "userId", ExpenseRollup.class, String.class));
+
+        for (String userId : userIds) {
+            try {
+                rebuild(userId);
+            } catch (Exception ex) {
+                LOG.warn("Rollup reconcile failed for user {}: {}", userId, ex.getMessage());
+            }
+        }
+        LOG.info("Reconciled expense rollups for {} users", userIds.size());
+    }
+}
@@ -1,32 +1,181 @@
 package com.aimex.backend.service;
 
+import com.aimex.backend.models.CategorizationStatus;
+import com.aimex.backend.models.Category;
 import com.aimex.backend.models.Expense;
 import com.aimex.backend.repository.ExpenseRepository;
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import com.aimex.backend.service.dto.BulkImportResultDTO;
+import com.aimex.backend.service.dto.ExpensePageDTO;
+import com.aimex.backend.service.dto.ExpensePageRequest;
+import io.micrometer.core.annotation.Timed;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "aimex.service", histogram = true)
 public class ExpenseService {
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseService.class);
+    private static final int PENDING_RECOVERY_LIMIT = 10_000;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final Duration RESUME_LEASE = Duration.ofMinutes(10);
+    private static final Duration MERCHANT_KEY_LEASE = Duration.ofHours(1);
+    private static final int BACKFILL_BATCH = 1000;
+
     private final ExpenseRepository expenseRepository;
     private final CategoryService categoryService;
     private final AiCategorizationService aiCategorizationService;
+    private final ExpenseRollupService rollupService;
+    private final CategorizationWorker categorizationWorker;
+    private final ExpenseIngestionService ingestionService;
+    private final RecurrenceEngine recurrenceEngine;
+    private final AnomalyDetector anomalyDetector;
+    private final DataVersionService dataVersionService;
+    private final ExpenseColumnStore columnStore;
+    private final MongoTemplate mongoTemplate;
+    private final JobLock jobLock;
+    private final boolean asyncCategorization;
+    private final int listLimit;
 
     public ExpenseService(ExpenseRepository expenseRepository,
                           CategoryService categoryService,
-                          AiCategorizationService aiCategorizationService) {
+                          AiCategorizationService aiCategorizationService,
+                          ExpenseRollupService rollupService,
+                          CategorizationWorker categorizationWorker,
+                          ExpenseIngestionService ingestionService,
+                          RecurrenceEngine recurrenceEngine,
+                          AnomalyDetector anomalyDetector,
+                          DataVersionService dataVersionService,
+                          ExpenseColumnStore columnStore,
+                          MongoTemplate mongoTemplate,
+                          JobLock jobLock,
+                          @Value("${aimex.categorization.async.enabled:false}") boolean asyncCategorization,
+                          @Value("${aimex.expenses.list-limit:1000}") int listLimit) {
         this.expenseRepository = expenseRepository;
         this.categoryService = categoryService;
         this.aiCategorizationService = aiCategorizationService;
+        this.rollupService = rollupService;
+        this.categorizationWorker = categorizationWorker;
+        this.ingestionService = ingestionService;
+        this.recurrenceEngine = recurrenceEngine;
+        this.anomalyDetector = anomalyDetector;
+        this.dataVersionService = dataVersionService;
+        this.columnStore = columnStore;
+        this.mongoTemplate = mongoTemplate;
+        this.jobLock = jobLock;
+        this.asyncCategorization = asyncCategorization;
+        this.listLimit = listLimit;
     }
 
-    // GET all expenses for a user
+    // the user's newest expenses, capped at aimex.expenses.list-limit; older ones are reached through getExpensePage
     public List<Expense> getAllExpenses(String userId){
-        return expenseRepository.findAllByUserId(userId);
+        Query query = Query.query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "date", "_id"))
+                .limit(listLimit);
+        return mongoTemplate.find(query, Expense.class);
+    }
+
+    // Newest first, keyset-paginated on (date, _id) so each page costs the same however deep it is.
+    // Expenses without a date are not listed; every write path assigns one.
+    public ExpensePageDTO getExpensePage(String userId, ExpensePageRequest request) {
+        int limit = Math.clamp(request.limit(), 1, MAX_PAGE_SIZE);
+
+        List<Criteria> filters = new ArrayList<>();
+        filters.add(Criteria.where("userId").is(userId));
+
+        Criteria date = Criteria.where("date").ne(null);
+        if (request.from() != null) {
+            date.gte(request.from());
+        }
+        if (request.to() != null) {
+            date.lte(request.to());
+        }
+        filters.add(date);
+
+        if (request.categoryId() != null) {
+            filters.add(Criteria.where("categoryId").is(request.categoryId()));
+        }
+        if (request.merchant() != null && !request.merchant().isBlank()) {
+            filters.add(Criteria.where("merchantKey").is(Expense.merchantKey(request.merchant())));
+        }
+        if (request.minAmount() != null || request.maxAmount() != null) {
+            Criteria amount = Criteria.where("amount");
+            if (request.minAmount() != null) {
+                amount.gte(request.minAmount());
+            }
+            if (request.maxAmount() != null) {
+                amount.lte(request.maxAmount());
+            }
+            filters.add(amount);
+        }
+        if (request.cursor() != null && !request.cursor().isBlank()) {
+            PageCursor after = PageCursor.decode(request.cursor());
+            filters.add(new Criteria().orOperator(
+                    Criteria.where("date").lt(after.date()),
+                    Criteria.where("date").is(after.date()).and("_id").lt(new ObjectId(after.id()))));
+        }
+
+        Query query = new Query(new Criteria().andOperator(filters))
+                .with(Sort.by(Sort.Direction.DESC, "date", "_id"))
+                .limit(limit + 1);
+        if (request.compact()) {
+            query.fields().exclude("aiReasoning", "description");
+        }
+
+        List<Expense> expenses = mongoTemplate.find(query, Expense.class);
+        if (expenses.size() <= limit) {
+            return new ExpensePageDTO(expenses, null);
+        }
+
+        List<Expense> page = expenses.subList(0, limit);
+        Expense last = page.get(limit - 1);
+        return new ExpensePageDTO(page, new PageCursor(last.getDate(), last.getId()).encode());
+    }
+
+    private record PageCursor(LocalDate date, String id) {
+        String encode() {
+            String raw = date + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                String id = raw.substring(separator + 1);
+                if (separator < 0 || !ObjectId.isValid(id)) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new PageCursor(LocalDate.parse(raw.substring(0, separator)), id);
+            } catch (IllegalArgumentException | DateTimeParseException ex) {
+                throw new IllegalArgumentException("Invalid cursor", ex);
+            }
+        }
     }
 
     public Optional<Expense> getExpenseById(String userId, String id) {
@@ -38,10 +187,12 @@ public class ExpenseService {
         return persistExpense(userId, expense);
     }
 
-    public List<Expense> bulkCreateExpenses(String userId, List<Expense> expenses) {
-        return expenses.stream()
-                .map(expense -> persistExpense(userId, expense))
-                .collect(Collectors.toList());
+    public List<Expense> getAnomalies(String userId, int limit) {
+        return anomalyDetector.getAnomalies(userId, limit);
+    }
+
+    public BulkImportResultDTO bulkCreateExpenses(String userId, List<Expense> expenses) {
+        return ingestionService.ingest(userId, expenses);
     }
 
     public void deleteExpense(String userId, String id) {
@@ -50,6 +201,10 @@ public class ExpenseService {
             throw new RuntimeException("Expense not found");
         }
         expenseRepository.delete(expense.get());
+        rollupService.recordDeleted(expense.get());
+        recurrenceEngine.recordDeleted(expense.get());
+        anomalyDetector.recordDeleted(expense.get());
+        columnStore.recordDeleted(userId, id, dataVersionService.bumpExpenses(userId));
     }
 
     public Expense updateExpense(String userId, String id, Expense updatedExpense) {
@@ -62,61 +217,200 @@ public class ExpenseService {
         Expense expenseToSave = existingExpense.get();
         updatedExpense.setId(id);
         updatedExpense.setUserId(userId);
+        // an edit supersedes any background categorization still in flight
+        updatedExpense.setCategorizationStatus(null);
         updatedExpense.setDate(updatedExpense.getDate() == null ? expenseToSave.getDate() : updatedExpense.getDate());
 
         if (updatedExpense.getCategoryId() != null) {
-            categoryService.validateCategory(updatedExpense.getCategoryId(), userId);
+            Category category = categoryService.validateCategory(updatedExpense.getCategoryId(), userId);
+            if (!category.getId().equals(expenseToSave.getCategoryId())) {
+                aiCategorizationService.recordUserChoice(userId, updatedExpense, category);
+            }
         } else {
             applyAICategorization(userId, updatedExpense);
         }
 
-        detectRecurring(userId, updatedExpense);
+        updatedExpense.setIsRecurring(recurrenceEngine.flagUpdated(expenseToSave, updatedExpense));
+        anomalyDetector.flagUpdated(expenseToSave, updatedExpense);
 
-        return expenseRepository.save(updatedExpense);
+        Expense saved = expenseRepository.save(updatedExpense);
+        rollupService.recordUpdated(expenseToSave, saved);
+        recurrenceEngine.recordUpdated(expenseToSave, saved);
+        anomalyDetector.recordUpdated(expenseToSave, saved);
+        columnStore.recordSaved(userId, List.of(saved), dataVersionService.bumpExpenses(userId));
+        return saved;
     }
 
-    private Expense persistExpense(String userId, Expense expense) {
-        expense.setUserId(userId);
+    public CompletableFuture<Expense> awaitCategorization(String userId, String id, Duration timeout) {
+        Expense current = getExpenseById(userId, id)
+                .orElseThrow(() -> new RuntimeException("Expense not found"));
 
-        if (expense.getDate() == null) {
-            expense.setDate(LocalDate.now());
+        if (current.getCategorizationStatus() != CategorizationStatus.PENDING || timeout.isZero()) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        CompletableFuture<Expense> waiter = categorizationWorker.awaitCompletion(id);
+
+        // the job may have finished between the read above and registering the waiter
+        Optional<Expense> latest = getExpenseById(userId, id);
+        if (latest.isEmpty() || latest.get().getCategorizationStatus() != CategorizationStatus.PENDING) {
+            categorizationWorker.notifyCompleted(latest.orElse(current));
         }
 
+        return waiter.copy()
+                .completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApplyAsync(result -> {
+                    if (result != null) {
+                        return result;
+                    }
+                    categorizationWorker.forget(id, waiter);
+                    return getExpenseById(userId, id).orElse(current);
+                }, categorizationWorker.waiterExecutor());
+    }
+
+    private Expense persistExpense(String userId, Expense expense) {
         if (expense.getCategoryId() != null) {
             categoryService.validateCategory(expense.getCategoryId(), userId);
+        } else if (asyncCategorization) {
+            return persistWithBackgroundCategorization(userId, expense);
         } else {
             applyAICategorization(userId, expense);
         }
 
-        detectRecurring(userId, expense);
+        return saveNewExpense(userId, expense);
+    }
+
+    // Known merchants are resolved inline; anything that needs the LLM is saved as PENDING and patched later.
+    private Expense persistWithBackgroundCategorization(String userId, Expense expense) {
+        Optional<AiCategorySuggestion> known = aiCategorizationService.suggestKnownCategory(userId, expense);
+        if (known.isPresent() || expense.getMerchant() == null || expense.getMerchant().isBlank()) {
+            known.ifPresent(suggestion -> applySuggestion(expense, suggestion));
+            return saveNewExpense(userId, expense);
+        }
+
+        expense.setCategorizationStatus(CategorizationStatus.PENDING);
+        Expense saved = saveNewExpense(userId, expense);
 
-        return expenseRepository.save(expense);
+        if (!categorizationWorker.submit(userId, saved, this::completeCategorization)) {
+            // queue is full: pay the LLM latency on this request rather than grow the backlog
+            completeCategorization(userId, saved.getId(), aiCategorizationService.suggestCategory(userId, saved));
+            return getExpenseById(userId, saved.getId()).orElse(saved);
+        }
+        return saved;
     }
 
-    private void applyAICategorization(String userId, Expense expense) {
-        aiCategorizationService.suggestCategory(userId, expense)
-                .ifPresent(suggestion -> {
-                    expense.setCategoryId(suggestion.categoryId());
-                    expense.setConfidenceScore(suggestion.confidence());
-                    expense.setAiReasoning(suggestion.reason());
-                });
+    private void completeCategorization(String userId, String expenseId, Optional<AiCategorySuggestion> suggestion) {
+        Query stillPending = Query.query(Criteria.where("_id").is(expenseId)
+                .and("userId").is(userId)
+                .and("categorizationStatus").is(CategorizationStatus.PENDING));
+
+        Update update = new Update().set("categorizationStatus", CategorizationStatus.FAILED);
+        suggestion.ifPresent(result -> update
+                .set("categoryId", result.categoryId())
+                .set("confidenceScore", result.confidence())
+                .set("aiReasoning", result.reason())
+                .set("categorizationStatus", CategorizationStatus.COMPLETED));
+
+        Expense patched = mongoTemplate.findAndModify(stillPending, update,
+                FindAndModifyOptions.options().returnNew(true), Expense.class);
+
+        if (patched == null) {
+            // deleted or edited by the user while the job was running
+            return;
+        }
+
+        if (patched.getCategoryId() != null) {
+            rollupService.recordRecategorized(patched, null);
+            anomalyDetector.recordCategorized(patched);
+            columnStore.recordSaved(userId, List.of(patched), dataVersionService.bumpExpenses(userId));
+        }
+        categorizationWorker.notifyCompleted(patched);
     }
 
-    private void detectRecurring(String userId, Expense expense) {
-        if (expense.getMerchant() == null || expense.getDate() == null || expense.getAmount() == null) {
-            expense.setIsRecurring(false);
+    // every instance fires this on startup; the lease keeps the resubmission to one of them
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingCategorization() {
+        if (!asyncCategorization) {
             return;
         }
 
-        List<Expense> history = expenseRepository
-                .findByUserIdAndMerchantIgnoreCase(userId, expense.getMerchant());
+        try {
+            jobLock.runExclusively("categorization-resume", RESUME_LEASE, () -> {
+                Query pending = Query.query(Criteria.where("categorizationStatus").is(CategorizationStatus.PENDING))
+                        .limit(PENDING_RECOVERY_LIMIT);
+                for (Expense expense : mongoTemplate.find(pending, Expense.class)) {
+                    if (!categorizationWorker.submit(expense.getUserId(), expense, this::completeCategorization)) {
+                        break;
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            LOG.error("Resuming pending categorization failed; those expenses stay PENDING until edited", ex);
+        }
+    }
 
-        long similar = history.stream()
-                .filter(existing -> existing.getDate() != null)
-                .filter(existing -> ChronoUnit.DAYS.between(existing.getDate(), expense.getDate()) <= 90)
-                .filter(existing -> Math.abs(existing.getAmount() - expense.getAmount()) <= expense.getAmount() * 0.1)
-                .count();
+    // expenses written before merchantKey existed get it once; every write path sets it through setMerchant
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMerchantKeys() {
+        try {
+            jobLock.runExclusively("merchant-key-backfill", MERCHANT_KEY_LEASE, () -> {
+                Query missing = Query.query(Criteria.where("merchant").ne(null).and("merchantKey").exists(false));
+                missing.fields().include("merchant");
+
+                long updated = 0;
+                BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+                int batched = 0;
+                try (Stream<Expense> expenses = mongoTemplate.stream(missing, Expense.class)) {
+                    Iterator<Expense> iterator = expenses.iterator();
+                    while (iterator.hasNext()) {
+                        Expense expense = iterator.next();
+                        operations.updateOne(Query.query(Criteria.where("_id").is(expense.getId())),
+                                new Update().set("merchantKey", Expense.merchantKey(expense.getMerchant())));
+                        if (++batched == BACKFILL_BATCH) {
+                            updated += operations.execute().getModifiedCount();
+                            operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+                            batched = 0;
+                        }
+                    }
+                }
+                if (batched > 0) {
+                    updated += operations.execute().getModifiedCount();
+                }
+                if (updated > 0) {
+                    LOG.info("Backfilled merchantKey on {} expenses", updated);
+                }
+            });
+        } catch (RuntimeException ex) {
+            LOG.error("merchantKey backfill failed; older expenses will not match merchant filters until it runs", ex);
+        }
+    }
+
+    private Expense saveNewExpense(String userId, Expense expense) {
+        expense.setUserId(userId);
+
+        if (expense.getDate() == null) {
+            expense.setDate(LocalDate.now());
+        }
+
+        expense.setIsRecurring(recurrenceEngine.flagCreated(expense));
+        anomalyDetector.flagCreated(expense);
+
+        Expense saved = expenseRepository.save(expense);
+        rollupService.recordCreated(saved);
+        recurrenceEngine.recordCreated(saved);
+        anomalyDetector.recordCreated(saved);
+        columnStore.recordSaved(userId, List.of(saved), dataVersionService.bumpExpenses(userId));
+        return saved;
+    }
+
+    private void applyAICategorization(String userId, Expense expense) {
+        aiCategorizationService.suggestCategory(userId, expense)
+                .ifPresent(suggestion -> applySuggestion(expense, suggestion));
+    }
 
-        expense.setIsRecurring(similar >= 2);
+    private void applySuggestion(Expense expense, AiCategorySuggestion suggestion) {
+        expense.setCategoryId(suggestion.categoryId());
+        expense.setConfidenceScore(suggestion.confidence());
+        expense.setAiReasoning(suggestion.reason());
     }
 }
@@ -0,0 +1,175 @@
+package com.aimex.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Count-based circuit breaker for Gemini calls. The last {@code window-size} outcomes are kept in
+ * a ring; once at least {@code minimum-calls} are recorded, the breaker opens when the failure
+ * rate or the slow-call rate crosses its threshold. After {@code open-duration} a few probe calls
+ * are let through (half-open); they close the breaker if all succeed and reopen it otherwise.
+ */
+@Component
+public class GeminiCircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GeminiCircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final Duration slowCallDuration;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+
+    // outcome ring: 0 = ok, 1 = failed, 2 = slow
+    private final byte[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private Instant openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    public GeminiCircuitBreaker(@Value("${gemini.client.circuit.window-size:20}") int windowSize,
+                                @Value("${gemini.client.circuit.minimum-calls:10}") int minimumCalls,
+                                @Value("${gemini.client.circuit.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                @Value("${gemini.client.circuit.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+                                @Value("${gemini.client.circuit.slow-call-duration:5s}") Duration slowCallDuration,
+                                @Value("${gemini.client.circuit.open-duration:30s}") Duration openDuration,
+                                @Value("${gemini.client.circuit.half-open-calls:3}") int halfOpenCalls,
+                                MeterRegistry meterRegistry) {
+        this(windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold, slowCallDuration,
+                openDuration, halfOpenCalls, Clock.systemUTC(), meterRegistry);
+    }
+
+    GeminiCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold,
+                         Duration slowCallDuration, Duration openDuration, int halfOpenCalls,
+                         Clock clock, MeterRegistry meterRegistry) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.clamp(minimumCalls, 1, this.windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.outcomes = new byte[this.windowSize];
+
+        Gauge.builder("aimex.gemini.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open")
+                .register(meterRegistry);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    // false means the call must not be made; the caller falls back straight away
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.instant().isBefore(openedAt.plus(openDuration))) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenCalls) {
+                return false;
+            }
+            probesIssued++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(Duration elapsed) {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(elapsed.compareTo(slowCallDuration) >= 0 ? (byte) 2 : (byte) 0);
+    }
+
+    // the call was acquired but never reached Gemini; hand back a half-open probe slot
+    public synchronized void onSkipped() {
+        if (state == State.HALF_OPEN && probesIssued > 0) {
+            probesIssued--;
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record((byte) 1);
+    }
+
+    private void record(byte outcome) {
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (recorded == windowSize) {
+            forget(outcomes[next]);
+        } else {
+            recorded++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % windowSize;
+        if (outcome == 1) {
+            failures++;
+        } else if (outcome == 2) {
+            slowCalls++;
+        }
+
+        if (recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == 1) {
+            failures--;
+        } else if (outcome == 2) {
+            slowCalls--;
+        }
+    }
+
+    private void transitionTo(State target) {
+        LOG.info("Gemini circuit {} -> {} (failures {}, slow {}, of {})", state, target, failures, slowCalls, recorded);
+        state = target;
+        meterRegistry.counter("aimex.gemini.circuit.transitions", "to", target.name().toLowerCase()).increment();
+
+        probesIssued = 0;
+        probesSucceeded = 0;
+        if (target == State.OPEN) {
+            openedAt = clock.instant();
+        } else if (target == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+}
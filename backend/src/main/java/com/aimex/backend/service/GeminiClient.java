@@ -0,0 +1,165 @@
+package com.aimex.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The only way out to Gemini. Calls share one JDK HTTP/2 client (streams are multiplexed over
+ * pooled connections), each call carries {@code gemini.client.call-timeout} as its deadline, at most
+ * {@code gemini.client.max-concurrent-calls} run at once, and {@link GeminiCircuitBreaker} sheds
+ * calls while Gemini is failing or slow. Every refusal or failure surfaces as
+ * {@link AiCategorizationException} so callers fall back to cached or "Uncategorized" answers.
+ */
+@Component
+public class GeminiClient {
+
+    private final RestClient restClient;
+    private final GeminiCircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final Duration bulkheadWait;
+    private final String apiKey;
+    private final String model;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter circuitRejections;
+    private final Counter bulkheadRejections;
+
+    public GeminiClient(RestClient.Builder restClientBuilder,
+                        GeminiCircuitBreaker circuitBreaker,
+                        MeterRegistry meterRegistry,
+                        @Value("${gemini.api.key:}") String apiKey,
+                        @Value("gemini-2.0-flash-lite") String model,
+                        @Value("${gemini.api.base-url:https://generativelanguage.googleapis.com/v1beta}") String baseUrl,
+                        @Value("${gemini.client.connect-timeout:2s}") Duration connectTimeout,
+                        @Value("${gemini.client.call-timeout:10s}") Duration callTimeout,
+                        @Value("${gemini.client.max-concurrent-calls:16}") int maxConcurrentCalls,
+                        @Value("${gemini.client.bulkhead-wait:100ms}") Duration bulkheadWait) {
+        this.circuitBreaker = circuitBreaker;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.bulkhead = new Semaphore(Math.max(1, maxConcurrentCalls));
+        this.bulkheadWait = bulkheadWait;
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(callTimeout);
+
+        // Gemini native base URL
+        this.restClient = restClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .defaultHeader("x-goog-api-key", apiKey) // Native Auth Header
+                .defaultHeader("Content-Type", "application/json")
+                .build();
+
+        this.meterRegistry = meterRegistry;
+        this.circuitRejections = meterRegistry.counter("aimex.gemini.rejections", "reason", "circuit_open");
+        this.bulkheadRejections = meterRegistry.counter("aimex.gemini.rejections", "reason", "bulkhead_full");
+        Gauge.builder("aimex.gemini.in_flight", bulkhead, semaphore -> Math.max(1, maxConcurrentCalls) - semaphore.availablePermits())
+                .register(meterRegistry);
+    }
+
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isBlank();
+    }
+
+    // returns the raw generateContent response body
+    public String generateContent(String prompt) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitRejections.increment();
+            throw new AiCategorizationException("Gemini circuit is open");
+        }
+
+        if (!acquireBulkhead()) {
+            bulkheadRejections.increment();
+            circuitBreaker.onSkipped();
+            throw new AiCategorizationException("Too many concurrent Gemini calls");
+        }
+
+        long start = System.nanoTime();
+        try {
+            String response = post(prompt);
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            callTimer("success").record(elapsed);
+            circuitBreaker.onSuccess(elapsed);
+            return response;
+        } catch (Exception ex) {
+            callTimer(failureOutcome(ex)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.onFailure();
+            throw new AiCategorizationException("Gemini generateContent call failed: " + ex.getMessage(), ex);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Timer callTimer(String outcome) {
+        return Timer.builder("aimex.gemini.calls")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String failureOutcome(Exception ex) {
+        if (ex instanceof RestClientResponseException) {
+            return "http_error";
+        }
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTimeoutException) {
+                return "timeout";
+            }
+        }
+        return "transport_error";
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String post(String prompt) {
+        Map<String, Object> request = Map.of(
+                "contents", List.of(
+                        Map.of("parts", List.of(
+                                Map.of("text", prompt)
+                        ))
+                ),
+                "generationConfig", Map.of(
+                        "temperature", 0.2,
+                        "responseMimeType", "application/json"
+                )
+        );
+
+        return restClient.post()
+                .uri("/models/" + model + ":generateContent")
+                .header("x-goog-api-key", apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .retrieve()
+                .body(String.class);
+    }
+}
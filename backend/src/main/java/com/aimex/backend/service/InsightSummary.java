@@ -0,0 +1,27 @@
+package com.aimex.backend.service;
+
+import java.util.List;
+
+/**
+ * The compact, already-aggregated view of one user's month that insights are generated from.
+ * Amounts are rounded to cents; this record, serialized as JSON, is the only user data sent to the LLM.
+ */
+record InsightSummary(String month,
+                      int dayOfMonth,
+                      int daysInMonth,
+                      List<CategoryChange> categories,
+                      List<NewRecurring> newRecurring,
+                      List<BudgetBurn> budgets) {
+
+    // month-to-date against the two previous full months
+    record CategoryChange(String category, double monthToDate, double lastMonth, double monthBefore) { }
+
+    record NewRecurring(String merchant, String cadence, double amountLow, double amountHigh) { }
+
+    // projectedPercent extrapolates month-to-date spend linearly to the end of the month
+    record BudgetBurn(String category, double limit, double spent, double percentUsed, double projectedPercent) { }
+
+    boolean isEmpty() {
+        return categories.isEmpty() && newRecurring.isEmpty() && budgets.isEmpty();
+    }
+}
@@ -0,0 +1,416 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Budget;
+import com.aimex.backend.models.Category;
+import com.aimex.backend.models.ExpenseRollup;
+import com.aimex.backend.models.MerchantRecurrence;
+import com.aimex.backend.models.UserInsight;
+import com.aimex.backend.models.UserInsight.Insight;
+import com.aimex.backend.repository.BudgetRepository;
+import com.aimex.backend.repository.UserInsightRepository;
+import com.aimex.backend.service.dto.InsightDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Per-user spending insights, generated in a scheduled batch and read from storage.
+ * <p>
+ * The batch covers users with spend in the current month. For each, it builds an
+ * {@link InsightSummary} from rollups, budgets and recurrence state. That summary is the only
+ * thing sent to Gemini, and it is sent at most once per user per ISO week. If the user's data
+ * version has not moved since the last generation in the same month, the previous insights
+ * are carried over without a call. Without a Gemini key, insights are derived from the summary
+ * by fixed rules instead. Reads go through a small cache, so the insights endpoint never
+ * computes anything.
+ * <p>
+ * Every instance schedules the batch, but it runs on one at a time under a {@link JobLock}.
+ * Each (user, period) document is also claimed by inserting a placeholder before Gemini is
+ * called, so overlapping runs never generate the same week twice. A stored week never changes
+ * once generated, so cached insights for the current week live for the full cache TTL; users
+ * still waiting for this week's insights are re-read after {@code aimex.insights.cache.pending-ttl}.
+ */
+@Service
+public class InsightsService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InsightsService.class);
+
+    private static final int MAX_INSIGHTS = 5;
+    private static final Set<String> TYPES = Set.of("info", "warning", "success");
+    private static final String UNCATEGORIZED = "Uncategorized";
+    private static final Duration BATCH_LEASE = Duration.ofHours(6);
+    // a claim this old without a result belongs to a run that died; another run may take it over
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(15);
+
+    private final MongoTemplate mongoTemplate;
+    private final UserInsightRepository insightRepository;
+    private final ExpenseRollupService rollupService;
+    private final BudgetRepository budgetRepository;
+    private final CategoryService categoryService;
+    private final DataVersionService dataVersionService;
+    private final GeminiClient geminiClient;
+    private final JobLock jobLock;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int concurrency;
+    private final int maxCategories;
+
+    private final Cache<String, CachedInsights> cache;
+
+    private record CachedInsights(String period, List<InsightDTO> insights) { }
+
+    public InsightsService(MongoTemplate mongoTemplate,
+                           UserInsightRepository insightRepository,
+                           ExpenseRollupService rollupService,
+                           BudgetRepository budgetRepository,
+                           CategoryService categoryService,
+                           DataVersionService dataVersionService,
+                           GeminiClient geminiClient,
+                           JobLock jobLock,
+                           MeterRegistry meterRegistry,
+                           @Value("${aimex.insights.concurrency:4}") int concurrency,
+                           @Value("${aimex.insights.max-categories:8}") int maxCategories,
+                           @Value("${aimex.insights.cache.max-entries:20000}") long cacheEntries,
+                           @Value("${aimex.insights.cache.ttl:1h}") Duration cacheTtl,
+                           @Value("${aimex.insights.cache.pending-ttl:1m}") Duration pendingTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.insightRepository = insightRepository;
+        this.rollupService = rollupService;
+        this.budgetRepository = budgetRepository;
+        this.categoryService = categoryService;
+        this.dataVersionService = dataVersionService;
+        this.geminiClient = geminiClient;
+        this.jobLock = jobLock;
+        this.meterRegistry = meterRegistry;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxCategories = maxCategories;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheEntries)
+                .expireAfter(new Expiry<String, CachedInsights>() {
+                    @Override
+                    public long expireAfterCreate(String userId, CachedInsights value, long currentTime) {
+                        return (period(LocalDate.now()).equals(value.period()) ? cacheTtl : pendingTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userId, CachedInsights value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(userId, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userId, CachedInsights value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "insights");
+    }
+
+    // latest stored insights; empty until the batch has covered the user
+    public List<InsightDTO> getInsights(String userId) {
+        return cache.get(userId, id -> insightRepository.findFirstByUserIdAndGeneratedAtNotNullOrderByPeriodDesc(id)
+                .map(stored -> new CachedInsights(stored.getPeriod(), stored.getInsights().stream()
+                        .map(insight -> new InsightDTO(insight.type(), insight.title(), insight.message()))
+                        .toList()))
+                .orElse(new CachedInsights(null, List.of())))
+                .insights();
+    }
+
+    @Scheduled(cron = "${aimex.insights.cron:0 0 5 * * *}")
+    public void generateAll() {
+        jobLock.runExclusively("insights-batch", BATCH_LEASE, this::generateForActiveUsers);
+    }
+
+    private void generateForActiveUsers() {
+        LocalDate today = LocalDate.now();
+        Query active = Query.query(Criteria.where("monthYear").is(YearMonth.from(today).toString()));
+        List<String> userIds = mongoTemplate.findDistinct(active, "userId", ExpenseRollup.class, String.class);
+
+        // the Gemini bulkhead would reject a burst; pace the batch below it instead
+        Semaphore permits = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String userId : userIds) {
+                permits.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        generate(userId, today);
+                    } catch (RuntimeException ex) {
+                        record("failed");
+                        LOG.warn("Insight generation failed for user {}: {}", userId, ex.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        LOG.info("Insight batch covered {} active users", userIds.size());
+    }
+
+    void generate(String userId, LocalDate today) {
+        String period = period(today);
+        String id = userId + ":" + period;
+        if (!claim(id, userId, period)) {
+            return;
+        }
+        try {
+            generateClaimed(id, userId, period, today);
+        } catch (RuntimeException ex) {
+            // release the claim so the next run can retry
+            insightRepository.deleteById(id);
+            throw ex;
+        }
+    }
+
+    // inserts the (user, period) document as a placeholder; only the run whose insert or takeover succeeds generates it
+    private boolean claim(String id, String userId, String period) {
+        UserInsight placeholder = new UserInsight();
+        placeholder.setId(id);
+        placeholder.setUserId(userId);
+        placeholder.setPeriod(period);
+        placeholder.setClaimedAt(Instant.now());
+        try {
+            mongoTemplate.insert(placeholder);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            Query abandoned = Query.query(Criteria.where("_id").is(id)
+                    .and("generatedAt").is(null)
+                    .and("claimedAt").lt(Instant.now().minus(CLAIM_TIMEOUT)));
+            return mongoTemplate.updateFirst(abandoned, Update.update("claimedAt", Instant.now()), UserInsight.class)
+                    .getModifiedCount() == 1;
+        }
+    }
+
+    private void generateClaimed(String id, String userId, String period, LocalDate today) {
+        long version = dataVersionService.version(userId);
+        Optional<UserInsight> latest = insightRepository.findFirstByUserIdAndGeneratedAtNotNullOrderByPeriodDesc(userId);
+
+        UserInsight generated = new UserInsight();
+        generated.setId(id);
+        generated.setUserId(userId);
+        generated.setPeriod(period);
+        generated.setDataVersion(version);
+
+        if (latest.isPresent() && unchangedSince(latest.get(), version, today)) {
+            generated.setInsights(latest.get().getInsights());
+            generated.setSource("reused");
+        } else {
+            InsightSummary summary = summarize(userId, today);
+            if (summary.isEmpty()) {
+                insightRepository.deleteById(id);
+                return;
+            }
+            boolean useGemini = geminiClient.isConfigured();
+            generated.setInsights(useGemini ? askGemini(summary) : applyRules(summary));
+            generated.setSource(useGemini ? "gemini" : "rules");
+        }
+
+        generated.setGeneratedAt(Instant.now());
+        insightRepository.save(generated);
+        cache.invalidate(userId);
+        record(generated.getSource());
+    }
+
+    private boolean unchangedSince(UserInsight latest, long version, LocalDate today) {
+        return latest.getDataVersion() == version
+                && latest.getGeneratedAt() != null
+                && YearMonth.from(latest.getGeneratedAt().atZone(ZoneId.systemDefault())).equals(YearMonth.from(today));
+    }
+
+    InsightSummary summarize(String userId, LocalDate today) {
+        YearMonth month = YearMonth.from(today);
+        List<YearMonth> months = List.of(month, month.minusMonths(1), month.minusMonths(2));
+
+        // categoryId ("" for uncategorized) -> totals for this month, last month and the one before
+        Map<String, double[]> totals = new HashMap<>();
+        for (ExpenseRollup rollup : rollupService.getRollups(userId, months)) {
+            int slot = months.indexOf(YearMonth.parse(rollup.getMonthYear()));
+            totals.computeIfAbsent(categoryKey(rollup.getCategoryId()), key -> new double[3])[slot] += rollup.getTotal();
+        }
+
+        CategorySnapshot categories = categoryService.getSnapshot(userId);
+        List<InsightSummary.CategoryChange> changes = totals.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, double[]> entry) -> entry.getValue()[0] + entry.getValue()[1]).reversed())
+                .limit(maxCategories)
+                .map(entry -> new InsightSummary.CategoryChange(categoryName(categories, entry.getKey()),
+                        cents(entry.getValue()[0]), cents(entry.getValue()[1]), cents(entry.getValue()[2])))
+                .toList();
+
+        double elapsed = (double) today.getDayOfMonth() / month.lengthOfMonth();
+        List<InsightSummary.BudgetBurn> budgets = new ArrayList<>();
+        for (Budget budget : budgetRepository.findAllByUserIdAndMonthYear(userId, month.toString())) {
+            double spent = totals.getOrDefault(categoryKey(budget.getCategoryId()), new double[3])[0];
+            double percent = BudgetService.buildAlert(budget, spent).percentUsed();
+            budgets.add(new InsightSummary.BudgetBurn(categoryName(categories, categoryKey(budget.getCategoryId())),
+                    cents(Optional.ofNullable(budget.getMonthlyLimit()).orElse(0d)), cents(spent),
+                    cents(percent), cents(percent / elapsed)));
+        }
+
+        return new InsightSummary(month.toString(), today.getDayOfMonth(), month.lengthOfMonth(),
+                changes, newRecurring(userId, today), budgets);
+    }
+
+    // merchants whose cadence was first detected within the last insight period
+    private List<InsightSummary.NewRecurring> newRecurring(String userId, LocalDate today) {
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                .and("cadence").ne(null)
+                .and("cadenceSince").gte(today.minusWeeks(1)));
+        List<InsightSummary.NewRecurring> result = new ArrayList<>();
+        for (MerchantRecurrence recurrence : mongoTemplate.find(query, MerchantRecurrence.class)) {
+            result.add(new InsightSummary.NewRecurring(recurrence.getMerchant(),
+                    recurrence.getCadence().name().toLowerCase(Locale.ROOT),
+                    cents(Optional.ofNullable(recurrence.getAmountLow()).orElse(0d)),
+                    cents(Optional.ofNullable(recurrence.getAmountHigh()).orElse(0d))));
+        }
+        return result;
+    }
+
+    private List<Insight> askGemini(InsightSummary summary) {
+        try {
+            String response = geminiClient.generateContent(buildPrompt(summary));
+            List<Insight> insights = parseResponse(response);
+            if (insights.isEmpty()) {
+                throw new IllegalStateException("Gemini returned no usable insights");
+            }
+            return insights;
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to parse Gemini insights: " + ex.getMessage(), ex);
+        }
+    }
+
+    String buildPrompt(InsightSummary summary) throws JsonProcessingException {
+        return """
+            You are a personal finance assistant. Write short, specific insights about the user's spending
+            from the summary below. Do not invent numbers that are not in the summary.
+            "monthToDate" covers day %d of %d of the current month; "lastMonth" and "monthBefore" are full months.
+            "projectedPercent" is the month-to-date budget use extrapolated to the end of the month.
+
+            Respond ONLY with a JSON array of at most %d objects in the exact format:
+            [{"type": "info", "title": "...", "message": "..."}]
+            "type" is one of "info", "warning" or "success". Use "warning" for budgets on track to be exceeded
+            and sharp increases, "success" for clear improvements.
+
+            Summary:
+            %s
+            """.formatted(summary.dayOfMonth(), summary.daysInMonth(), MAX_INSIGHTS,
+                objectMapper.writeValueAsString(summary));
+    }
+
+    List<Insight> parseResponse(String response) throws JsonProcessingException {
+        JsonNode candidates = objectMapper.readTree(response).path("candidates");
+        if (!candidates.isArray() || candidates.isEmpty()) {
+            return List.of();
+        }
+        String contentText = candidates.get(0).path("content").path("parts").path(0).path("text").asText();
+        if (contentText.isBlank()) {
+            return List.of();
+        }
+
+        JsonNode items = objectMapper.readTree(contentText);
+        if (!items.isArray()) {
+            return List.of();
+        }
+        List<Insight> insights = new ArrayList<>();
+        for (JsonNode item : items) {
+            String title = item.path("title").asText("");
+            String message = item.path("message").asText("");
+            if (title.isBlank() || message.isBlank()) {
+                continue;
+            }
+            String type = item.path("type").asText("info").toLowerCase(Locale.ROOT);
+            insights.add(new Insight(TYPES.contains(type) ? type : "info", title, message));
+            if (insights.size() == MAX_INSIGHTS) {
+                break;
+            }
+        }
+        return insights;
+    }
+
+    // used when no Gemini key is configured
+    List<Insight> applyRules(InsightSummary summary) {
+        List<Insight> insights = new ArrayList<>();
+        for (InsightSummary.BudgetBurn budget : summary.budgets()) {
+            if (budget.projectedPercent() >= 100 && budget.limit() > 0) {
+                insights.add(new Insight("warning", budget.category() + " budget at risk",
+                        "You have used %.0f%% of your %s budget and are on pace for %.0f%% by month end."
+                                .formatted(budget.percentUsed(), budget.category(), budget.projectedPercent())));
+            }
+        }
+        for (InsightSummary.CategoryChange change : summary.categories()) {
+            if (change.monthBefore() > 0 && change.lastMonth() >= change.monthBefore() * 1.2) {
+                insights.add(new Insight("warning", "Higher " + change.category() + " spend",
+                        "You spent %.0f%% more on %s last month than the month before."
+                                .formatted((change.lastMonth() / change.monthBefore() - 1) * 100, change.category())));
+            } else if (change.monthBefore() > 0 && change.lastMonth() <= change.monthBefore() * 0.8) {
+                insights.add(new Insight("success", "Lower " + change.category() + " spend",
+                        "You spent %.0f%% less on %s last month than the month before."
+                                .formatted((1 - change.lastMonth() / change.monthBefore()) * 100, change.category())));
+            }
+        }
+        for (InsightSummary.NewRecurring recurring : summary.newRecurring()) {
+            insights.add(new Insight("info", "New recurring charge",
+                    "%s looks like a new %s charge of about %.2f.".formatted(recurring.merchant(), recurring.cadence(), recurring.amountHigh())));
+        }
+        if (insights.isEmpty()) {
+            insights.add(new Insight("info", "Spending Stable", "Your spending is consistent with last month."));
+        }
+        return insights.size() > MAX_INSIGHTS ? List.copyOf(insights.subList(0, MAX_INSIGHTS)) : insights;
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("aimex.insights.generated", "outcome", outcome).increment();
+    }
+
+    static String period(LocalDate date) {
+        return "%d-W%02d".formatted(date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    private static String categoryKey(String categoryId) {
+        return Objects.toString(categoryId, "");
+    }
+
+    private static String categoryName(CategorySnapshot categories, String key) {
+        if (key.isEmpty()) {
+            return UNCATEGORIZED;
+        }
+        return categories.findById(key).map(Category::getName).orElse(UNCATEGORIZED);
+    }
+
+    private static double cents(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
@@ -0,0 +1,66 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.JobLease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Keeps jobs that every instance schedules to one instance at a time. A job is held through a
+ * lease document in {@code job_leases}. Taking it is one conditional upsert that matches only an
+ * expired lease, so a second instance either finds it held or collides on the {@code _id} and
+ * backs off. The lease expires on its own if the holder dies mid-run.
+ */
+@Component
+public class JobLock {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JobLock.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final String owner = UUID.randomUUID().toString();
+
+    public JobLock(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // runs the task if no other instance holds the job; returns whether it ran
+    public boolean runExclusively(String job, Duration lease, Runnable task) {
+        if (!tryAcquire(job, lease)) {
+            LOG.info("Skipping {}: another instance holds it", job);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            release(job);
+        }
+    }
+
+    boolean tryAcquire(String job, Duration lease) {
+        Instant now = Instant.now();
+        Query expired = Query.query(Criteria.where("_id").is(job).and("lockedUntil").lt(now));
+        Update take = new Update().set("owner", owner).set("lockedUntil", now.plus(lease));
+        try {
+            return mongoTemplate.findAndModify(expired, take,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), JobLease.class) != null;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    void release(String job) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job).and("owner").is(owner)),
+                new Update().set("lockedUntil", Instant.now()), JobLease.class);
+    }
+}
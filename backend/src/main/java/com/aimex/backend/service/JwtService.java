@@ -1,7 +1,9 @@
 package com.aimex.backend.service;
 
+import com.aimex.backend.security.AuthenticatedUser;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -14,17 +16,21 @@ import java.security.MessageDigest;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.Optional;
 
 @Service
 public class JwtService {
 
     private final SecretKey secretKey;
+    private final JwtParser parser;
     private final long expirationMinutes;
 
     public JwtService(@Value("${jwt.secret}") String secret,
                       @Value("${jwt.expiration-minutes:120}") long expirationMinutes) {
         this.secretKey = createSecretKey(secret);
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
         this.expirationMinutes = expirationMinutes;
     }
 
@@ -63,30 +69,17 @@ public class JwtService {
                 .compact();
     }
 
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
-
-    public boolean isTokenValid(String token, String email) {
-        String username = extractEmail(token);
-        return username.equals(email) && !isExpired(token);
-    }
-
-    private boolean isExpired(String token) {
-        Date expiration = extractClaim(token, Claims::getExpiration);
-        return expiration.before(new Date());
-    }
-
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        Claims claims = parseToken(token).getBody();
-        return claimsResolver.apply(claims);
-    }
-
-    private Jws<Claims> parseToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token);
+    // one signature check per request; expired or tampered tokens come back empty
+    public Optional<AuthenticatedUser> verify(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            String userId = claims.get("uid", String.class);
+            if (claims.getSubject() == null || userId == null || claims.getExpiration() == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new AuthenticatedUser(claims.getSubject(), userId, claims.getExpiration().toInstant()));
+        } catch (JwtException | IllegalArgumentException ex) {
+            return Optional.empty();
+        }
     }
 }
-
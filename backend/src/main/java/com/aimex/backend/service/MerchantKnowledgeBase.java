@@ -0,0 +1,283 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Category;
+import com.aimex.backend.models.MerchantCategoryMapping;
+import com.aimex.backend.repository.MerchantCategoryMappingRepository;
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier merchant -> category store: the in-process {@link MerchantSuggestionCache} in front of
+ * the {@code merchant_category_map} collection, which survives restarts and is shared by every node.
+ * Explicit user choices are stored with source USER and take priority over AI results.
+ * <p>
+ * Renames and deletes invalidate the cache only on the node that made them, so every mapping is
+ * checked against the caller's {@link CategorySnapshot} before it is served: a mapping to a
+ * category the user no longer has counts as a miss, and a renamed one is served with the new name.
+ */
+@Service
+public class MerchantKnowledgeBase {
+
+    public static final String SOURCE_AI = "AI";
+    public static final String SOURCE_USER = "USER";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MerchantKnowledgeBase.class);
+
+    private final MerchantCategoryMappingRepository mappingRepository;
+    private final MerchantSuggestionCache merchantCache;
+    private final MongoTemplate mongoTemplate;
+    private final int warmUpLimit;
+    private final int userWarmUpLimit;
+    private final Duration warmUpWindow;
+    // login warm-ups are best effort: bounded in number and skipped for users warmed recently
+    private final Semaphore userWarmUpPermits;
+    private final Cache<String, Boolean> warmedUsers;
+
+    // aimex.merchant.lookups by tier; cache / (cache + store + miss) is the in-process hit ratio
+    private final Counter cacheHits;
+    private final Counter storeHits;
+    private final Counter misses;
+
+    public MerchantKnowledgeBase(MerchantCategoryMappingRepository mappingRepository,
+                                 MerchantSuggestionCache merchantCache,
+                                 MongoTemplate mongoTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${aimex.merchant-kb.warmup-limit:50000}") int warmUpLimit,
+                                 @Value("${aimex.merchant-kb.user-warmup-limit:500}") int userWarmUpLimit,
+                                 @Value("${aimex.merchant-kb.warmup-window:30d}") Duration warmUpWindow,
+                                 @Value("${aimex.merchant-kb.user-warmup-concurrency:4}") int userWarmUpConcurrency,
+                                 @Value("${aimex.merchant-kb.user-warmup-interval:1h}") Duration userWarmUpInterval) {
+        this.mappingRepository = mappingRepository;
+        this.merchantCache = merchantCache;
+        this.mongoTemplate = mongoTemplate;
+        this.warmUpLimit = warmUpLimit;
+        this.userWarmUpLimit = userWarmUpLimit;
+        this.warmUpWindow = warmUpWindow;
+        this.userWarmUpPermits = new Semaphore(userWarmUpConcurrency);
+        this.warmedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(userWarmUpInterval)
+                .build();
+        this.cacheHits = meterRegistry.counter("aimex.merchant.lookups", "tier", "cache");
+        this.storeHits = meterRegistry.counter("aimex.merchant.lookups", "tier", "store");
+        this.misses = meterRegistry.counter("aimex.merchant.lookups", "tier", "miss");
+    }
+
+    public static String mappingId(String userId, String merchant) {
+        return userId + ":" + merchant;
+    }
+
+    public Optional<AiCategorySuggestion> lookup(String userId, String merchant, CategorySnapshot categories) {
+        Optional<AiCategorySuggestion> cached = merchantCache.get(userId, merchant)
+                .flatMap(suggestion -> current(userId, merchant, suggestion, categories));
+        if (cached.isPresent()) {
+            cacheHits.increment();
+            return cached;
+        }
+
+        Optional<AiCategorySuggestion> stored = mappingRepository.findById(mappingId(userId, merchant))
+                .flatMap(mapping -> current(toSuggestion(mapping), categories));
+        stored.ifPresent(suggestion -> {
+            merchantCache.put(userId, merchant, suggestion);
+            touch(List.of(mappingId(userId, merchant)));
+        });
+        (stored.isPresent() ? storeHits : misses).increment();
+        return stored;
+    }
+
+    // merchant -> suggestion for every merchant either tier knows, with a single query for the cache misses
+    public Map<String, AiCategorySuggestion> lookupAll(String userId, Collection<String> merchants, CategorySnapshot categories) {
+        Map<String, AiCategorySuggestion> found = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+
+        for (String merchant : merchants) {
+            merchantCache.get(userId, merchant)
+                    .flatMap(suggestion -> current(userId, merchant, suggestion, categories))
+                    .ifPresentOrElse(
+                            suggestion -> found.put(merchant, suggestion),
+                            () -> missingIds.add(mappingId(userId, merchant)));
+        }
+
+        cacheHits.increment(found.size());
+        if (missingIds.isEmpty()) {
+            return found;
+        }
+
+        List<String> hitIds = new ArrayList<>();
+        for (MerchantCategoryMapping mapping : mappingRepository.findAllById(missingIds)) {
+            Optional<AiCategorySuggestion> suggestion = current(toSuggestion(mapping), categories);
+            if (suggestion.isEmpty()) {
+                continue;
+            }
+            merchantCache.put(userId, mapping.getMerchant(), suggestion.get());
+            found.put(mapping.getMerchant(), suggestion.get());
+            hitIds.add(mapping.getId());
+        }
+        touch(hitIds);
+        storeHits.increment(hitIds.size());
+        misses.increment(missingIds.size() - hitIds.size());
+        return found;
+    }
+
+    // a cached entry whose category is gone is dropped; a renamed one is replaced with the new name
+    private Optional<AiCategorySuggestion> current(String userId, String merchant, AiCategorySuggestion cached,
+                                                   CategorySnapshot categories) {
+        Optional<AiCategorySuggestion> suggestion = current(cached, categories);
+        if (suggestion.isEmpty()) {
+            merchantCache.invalidate(userId, merchant);
+        } else if (suggestion.get() != cached) {
+            merchantCache.put(userId, merchant, suggestion.get());
+        }
+        return suggestion;
+    }
+
+    private static Optional<AiCategorySuggestion> current(AiCategorySuggestion suggestion, CategorySnapshot categories) {
+        return categories.findById(suggestion.categoryId()).map(category ->
+                Objects.equals(category.getName(), suggestion.categoryName())
+                        ? suggestion
+                        : new AiCategorySuggestion(category.getId(), category.getName(), suggestion.confidence(), suggestion.reason()));
+    }
+
+    public void recordAiSuggestion(String userId, String merchant, AiCategorySuggestion suggestion) {
+        if (suggestion.categoryId() == null) {
+            return;
+        }
+        // only matches when no USER entry exists; otherwise the upsert's insert collides on _id
+        String id = mappingId(userId, merchant);
+        Query query = Query.query(Criteria.where("_id").is(id).and("source").ne(SOURCE_USER));
+        try {
+            mongoTemplate.upsert(query, mappingUpdate(userId, merchant, suggestion, SOURCE_AI), MerchantCategoryMapping.class);
+            merchantCache.put(userId, merchant, suggestion);
+        } catch (DuplicateKeyException ex) {
+            // the user's own choice wins, in the cache as well as in the store
+            LOG.debug("Kept user mapping for merchant {} over AI suggestion", merchant);
+            mappingRepository.findById(id)
+                    .ifPresent(mapping -> merchantCache.put(userId, merchant, toSuggestion(mapping)));
+        }
+    }
+
+    public void recordUserChoice(String userId, String merchant, Category category) {
+        AiCategorySuggestion suggestion = new AiCategorySuggestion(category.getId(), category.getName(), 1.0, "Chosen by user");
+        merchantCache.put(userId, merchant, suggestion);
+
+        Query query = Query.query(Criteria.where("_id").is(mappingId(userId, merchant)));
+        mongoTemplate.upsert(query, mappingUpdate(userId, merchant, suggestion, SOURCE_USER), MerchantCategoryMapping.class);
+    }
+
+    public void onCategoryRenamed(String userId, String categoryId, String name) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("categoryId").is(categoryId));
+        mongoTemplate.updateMulti(query, new Update().set("categoryName", name), MerchantCategoryMapping.class);
+        invalidateUser(userId);
+    }
+
+    public void onCategoryDeleted(String userId, String categoryId) {
+        mappingRepository.deleteAllByUserIdAndCategoryId(userId, categoryId);
+        invalidateUser(userId);
+    }
+
+    public void invalidateUser(String userId) {
+        merchantCache.invalidateUser(userId);
+        warmedUsers.invalidate(userId);
+    }
+
+    // runs warmUp off the caller's thread unless the user was warmed recently or enough warm-ups are running
+    public void warmUpInBackground(String userId) {
+        if (warmedUsers.getIfPresent(userId) != null || !userWarmUpPermits.tryAcquire()) {
+            return;
+        }
+        Thread.ofVirtual().name("merchant-warmup").start(() -> {
+            try {
+                warmUp(userId);
+                warmedUsers.put(userId, Boolean.TRUE);
+            } catch (RuntimeException ex) {
+                LOG.warn("Merchant cache warm-up failed for user {}: {}", userId, ex.getMessage());
+            } finally {
+                userWarmUpPermits.release();
+            }
+        });
+    }
+
+    public void warmUp(String userId) {
+        mappingRepository.findByUserIdOrderByLastUsedAtDesc(userId, PageRequest.of(0, userWarmUpLimit))
+                .forEach(mapping -> merchantCache.put(userId, mapping.getMerchant(), toSuggestion(mapping)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpActiveUsers() {
+        Query query = Query.query(Criteria.where("lastUsedAt").gte(LocalDateTime.now().minus(warmUpWindow)))
+                .with(Sort.by(Sort.Direction.DESC, "lastUsedAt"))
+                .limit(warmUpLimit);
+
+        try (Stream<MerchantCategoryMapping> mappings = mongoTemplate.stream(query, MerchantCategoryMapping.class)) {
+            long loaded = 0;
+            Iterator<MerchantCategoryMapping> iterator = mappings.iterator();
+            while (iterator.hasNext()) {
+                MerchantCategoryMapping mapping = iterator.next();
+                merchantCache.put(mapping.getUserId(), mapping.getMerchant(), toSuggestion(mapping));
+                loaded++;
+            }
+            LOG.info("Warmed merchant cache with {} mappings", loaded);
+        } catch (Exception ex) {
+            LOG.warn("Merchant cache warm-up failed: {}", ex.getMessage());
+        }
+    }
+
+    private void touch(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                new Update().set("lastUsedAt", LocalDateTime.now()), MerchantCategoryMapping.class);
+    }
+
+    private Update mappingUpdate(String userId, String merchant, AiCategorySuggestion suggestion, String source) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Update()
+                .set("userId", userId)
+                .set("merchant", merchant)
+                .set("categoryId", suggestion.categoryId())
+                .set("categoryName", suggestion.categoryName())
+                .set("confidence", suggestion.confidence())
+                .set("reason", suggestion.reason())
+                .set("source", source)
+                .set("updatedAt", now)
+                .set("lastUsedAt", now);
+    }
+
+    private AiCategorySuggestion toSuggestion(MerchantCategoryMapping mapping) {
+        return new AiCategorySuggestion(
+                mapping.getCategoryId(),
+                mapping.getCategoryName(),
+                Optional.ofNullable(mapping.getConfidence()).orElse(0.6),
+                mapping.getReason()
+        );
+    }
+}
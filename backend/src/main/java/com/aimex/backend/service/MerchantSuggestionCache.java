@@ -0,0 +1,86 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user merchant -> suggestion cache in front of the AI call. Entries are weighed by their
+ * approximate heap footprint, evicted W-TinyLFU once {@code aimex.merchant-cache.max-memory}
+ * is reached, and expire after {@code aimex.merchant-cache.ttl}. Hit/miss/eviction counters
+ * are published as the {@code cache.*} meters tagged {@code cache=merchant-suggestions}.
+ * <p>
+ * Invalidating a user bumps their generation, which is part of every key, so their old entries
+ * stop matching and age out. A generation is remembered for one TTL; by then every entry written
+ * under an older one has expired, so falling back to generation 0 cannot revive them.
+ */
+@Component
+public class MerchantSuggestionCache {
+
+    // Caffeine node, key record, suggestion record and String headers
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final Cache<Key, AiCategorySuggestion> cache;
+    private final Cache<String, Long> generations;
+    private final AtomicLong nextGeneration = new AtomicLong();
+
+    public MerchantSuggestionCache(@Value("${aimex.merchant-cache.max-memory:64MB}") DataSize maxMemory,
+                                   @Value("${aimex.merchant-cache.ttl:12h}") Duration ttl,
+                                   MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher(MerchantSuggestionCache::estimateBytes)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.generations = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "merchant-suggestions");
+    }
+
+    public Optional<AiCategorySuggestion> get(String userId, String merchant) {
+        return Optional.ofNullable(cache.getIfPresent(key(userId, merchant)));
+    }
+
+    public void put(String userId, String merchant, AiCategorySuggestion suggestion) {
+        cache.put(key(userId, merchant), suggestion);
+    }
+
+    public void invalidate(String userId, String merchant) {
+        cache.invalidate(key(userId, merchant));
+    }
+
+    // O(1): the user's entries are orphaned rather than removed
+    public void invalidateUser(String userId) {
+        generations.put(userId, nextGeneration.incrementAndGet());
+    }
+
+    private Key key(String userId, String merchant) {
+        Long generation = generations.getIfPresent(userId);
+        return new Key(userId, generation == null ? 0 : generation, merchant);
+    }
+
+    private static int estimateBytes(Key key, AiCategorySuggestion suggestion) {
+        return ENTRY_OVERHEAD_BYTES + 2 * (length(key.userId())
+                + length(key.merchant())
+                + length(suggestion.categoryId())
+                + length(suggestion.categoryName())
+                + length(suggestion.reason()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private record Key(String userId, long generation, String merchant) { }
+}
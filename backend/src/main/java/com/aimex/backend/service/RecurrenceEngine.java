@@ -0,0 +1,402 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.MerchantRecurrence;
+import com.aimex.backend.models.MerchantRecurrence.Occurrence;
+import com.aimex.backend.models.RecurrenceCadence;
+import com.aimex.backend.repository.MerchantRecurrenceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Recurring-expense detection from a small per-(user, merchant) state document. Each write
+ * touches one {@link MerchantRecurrence}: the occurrence is slotted into a bounded, date-ordered
+ * buffer and the cadence (weekly, monthly, annual) and amount band are recomputed from it.
+ * An expense is recurring when it falls inside the band and sits one cadence away from
+ * another buffered occurrence.
+ */
+@Service
+public class RecurrenceEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecurrenceEngine.class);
+
+    static final int CAPACITY = 12;
+    static final int MIN_OCCURRENCES = 3;
+    private static final double AMOUNT_TOLERANCE = 0.1;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final Duration BACKFILL_LEASE = Duration.ofHours(1);
+
+    private final MerchantRecurrenceRepository recurrenceRepository;
+    private final MongoTemplate mongoTemplate;
+    private final JobLock jobLock;
+    private final MeterRegistry meterRegistry;
+    private final Counter conflictCounter;
+
+    public RecurrenceEngine(MerchantRecurrenceRepository recurrenceRepository,
+                            MongoTemplate mongoTemplate,
+                            JobLock jobLock,
+                            MeterRegistry meterRegistry) {
+        this.recurrenceRepository = recurrenceRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.jobLock = jobLock;
+        this.meterRegistry = meterRegistry;
+        this.conflictCounter = meterRegistry.counter("aimex.recurrence.conflicts");
+    }
+
+    public static String recurrenceId(String userId, String merchant) {
+        return userId + ":" + merchant;
+    }
+
+    // isRecurring for an expense about to be created; reads its merchant's state but writes nothing
+    public boolean flagCreated(Expense expense) {
+        if (!trackable(expense)) {
+            return false;
+        }
+        MerchantRecurrence state = loadOrNew(expense.getUserId(), merchantKey(expense));
+        add(state, expense);
+        return isRecurring(state, expense);
+    }
+
+    // isRecurring for an expense about to replace before; writes nothing
+    public boolean flagUpdated(Expense before, Expense after) {
+        if (!trackable(after)) {
+            return false;
+        }
+        MerchantRecurrence state = loadOrNew(after.getUserId(), merchantKey(after));
+        if (sameMerchant(before, after)) {
+            remove(state, before);
+        }
+        add(state, after);
+        return isRecurring(state, after);
+    }
+
+    // applies a created expense to its merchant's state; call once the expense is saved
+    public void recordCreated(Expense expense) {
+        if (!trackable(expense)) {
+            return;
+        }
+        update("create", expense.getUserId(), merchantKey(expense), null, state -> {
+            add(state, expense);
+            return null;
+        });
+    }
+
+    // applies an edit to the merchant states involved; call once the edited expense is saved
+    public void recordUpdated(Expense before, Expense after) {
+        if (trackable(before) && !sameMerchant(before, after)) {
+            recordDeleted(before);
+        }
+        if (!trackable(after)) {
+            return;
+        }
+
+        boolean sameMerchant = sameMerchant(before, after);
+        update("update", after.getUserId(), merchantKey(after), null, state -> {
+            if (sameMerchant) {
+                remove(state, before);
+            }
+            add(state, after);
+            return null;
+        });
+    }
+
+    public void recordDeleted(Expense expense) {
+        if (!trackable(expense)) {
+            return;
+        }
+        update("delete", expense.getUserId(), merchantKey(expense), null, state -> {
+            remove(state, expense);
+            return null;
+        });
+    }
+
+    /**
+     * Sets isRecurring on every expense of an import, loading the touched states with one query.
+     * Earlier rows count towards later ones for the same merchant. Nothing is written here; the
+     * rows that make it into the database are applied afterwards with {@link #recordImported}.
+     */
+    public void flagAll(String userId, List<Expense> expenses) {
+        Map<String, List<Expense>> byMerchant = groupByMerchant(expenses);
+        Map<String, MerchantRecurrence> loaded = load(userId, byMerchant.keySet());
+
+        byMerchant.forEach((merchant, group) -> {
+            MerchantRecurrence state = loaded.getOrDefault(recurrenceId(userId, merchant), newState(userId, merchant));
+            for (Expense expense : group) {
+                add(state, expense);
+                expense.setIsRecurring(isRecurring(state, expense));
+            }
+        });
+    }
+
+    // adds the inserted rows of an import to their merchants' states, writing each state once
+    public void recordImported(String userId, List<Expense> imported) {
+        Map<String, List<Expense>> byMerchant = groupByMerchant(imported);
+        Map<String, MerchantRecurrence> loaded = load(userId, byMerchant.keySet());
+
+        byMerchant.forEach((merchant, group) ->
+                update("import", userId, merchant, loaded.get(recurrenceId(userId, merchant)), state -> {
+                    group.forEach(expense -> add(state, expense));
+                    return null;
+                }));
+    }
+
+    private static Map<String, List<Expense>> groupByMerchant(List<Expense> expenses) {
+        Map<String, List<Expense>> byMerchant = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            if (trackable(expense)) {
+                byMerchant.computeIfAbsent(merchantKey(expense), key -> new ArrayList<>()).add(expense);
+            } else {
+                expense.setIsRecurring(false);
+            }
+        }
+        return byMerchant;
+    }
+
+    private Map<String, MerchantRecurrence> load(String userId, Collection<String> merchants) {
+        Map<String, MerchantRecurrence> loaded = new HashMap<>();
+        List<String> ids = merchants.stream().map(merchant -> recurrenceId(userId, merchant)).toList();
+        recurrenceRepository.findAllById(ids).forEach(state -> loaded.put(state.getId(), state));
+        return loaded;
+    }
+
+    private MerchantRecurrence loadOrNew(String userId, String merchant) {
+        return recurrenceRepository.findById(recurrenceId(userId, merchant)).orElseGet(() -> newState(userId, merchant));
+    }
+
+    private static boolean sameMerchant(Expense before, Expense after) {
+        return trackable(before) && trackable(after) && merchantKey(before).equals(merchantKey(after));
+    }
+
+    // read-modify-write guarded by @Version; a concurrent writer makes us reload and reapply
+    private <T> T update(String operation, String userId, String merchant, MerchantRecurrence preloaded,
+                         Function<MerchantRecurrence, T> mutation) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return applyWithRetry(userId, merchant, preloaded, mutation);
+        } finally {
+            sample.stop(Timer.builder("aimex.recurrence.detection")
+                    .description("Load, update and save of one merchant's recurrence state")
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private <T> T applyWithRetry(String userId, String merchant, MerchantRecurrence preloaded,
+                                 Function<MerchantRecurrence, T> mutation) {
+        String id = recurrenceId(userId, merchant);
+        MerchantRecurrence state = preloaded;
+        T result = null;
+
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            if (state == null) {
+                state = recurrenceRepository.findById(id).orElseGet(() -> newState(userId, merchant));
+            }
+            result = mutation.apply(state);
+            try {
+                recurrenceRepository.save(state);
+                return result;
+            } catch (OptimisticLockingFailureException | DuplicateKeyException ex) {
+                conflictCounter.increment();
+                state = null;
+            }
+        }
+
+        LOG.warn("Recurrence state {} kept changing underneath us; skipping this update", id);
+        return result;
+    }
+
+    static MerchantRecurrence newState(String userId, String merchant) {
+        MerchantRecurrence state = new MerchantRecurrence();
+        state.setId(recurrenceId(userId, merchant));
+        state.setUserId(userId);
+        state.setMerchant(merchant);
+        return state;
+    }
+
+    static void add(MerchantRecurrence state, Expense expense) {
+        List<Occurrence> occurrences = state.getOccurrences();
+        int position = occurrences.size();
+        while (position > 0 && occurrences.get(position - 1).date().isAfter(expense.getDate())) {
+            position--;
+        }
+        occurrences.add(position, new Occurrence(expense.getDate(), expense.getAmount()));
+        if (occurrences.size() > CAPACITY) {
+            occurrences.removeFirst();
+        }
+        recompute(state);
+    }
+
+    private static void remove(MerchantRecurrence state, Expense expense) {
+        Iterator<Occurrence> iterator = state.getOccurrences().iterator();
+        while (iterator.hasNext()) {
+            Occurrence occurrence = iterator.next();
+            if (occurrence.date().equals(expense.getDate())
+                    && Math.abs(occurrence.amount() - expense.getAmount()) < 0.005) {
+                iterator.remove();
+                break;
+            }
+        }
+        recompute(state);
+    }
+
+    // cadence comes from the median gap and must be shared by most gaps; the band is ±10% of the median amount
+    private static void recompute(MerchantRecurrence state) {
+        RecurrenceCadence previous = state.getCadence();
+        detect(state);
+        if (state.getCadence() == null) {
+            state.setCadenceSince(null);
+        } else if (state.getCadence() != previous || state.getCadenceSince() == null) {
+            state.setCadenceSince(state.getOccurrences().getLast().date());
+        }
+    }
+
+    private static void detect(MerchantRecurrence state) {
+        List<Occurrence> occurrences = state.getOccurrences();
+        state.setCadence(null);
+        state.setAmountLow(null);
+        state.setAmountHigh(null);
+
+        if (occurrences.size() < MIN_OCCURRENCES) {
+            return;
+        }
+
+        List<Long> gaps = new ArrayList<>(occurrences.size() - 1);
+        for (int i = 1; i < occurrences.size(); i++) {
+            gaps.add(ChronoUnit.DAYS.between(occurrences.get(i - 1).date(), occurrences.get(i).date()));
+        }
+        RecurrenceCadence cadence = RecurrenceCadence.of(median(gaps));
+        if (cadence == null || gaps.stream().filter(cadence::matches).count() * 2 < gaps.size()) {
+            return;
+        }
+
+        double medianAmount = median(occurrences.stream().map(Occurrence::amount).toList());
+        double low = medianAmount * (1 - AMOUNT_TOLERANCE);
+        double high = medianAmount * (1 + AMOUNT_TOLERANCE);
+        long inBand = occurrences.stream()
+                .filter(occurrence -> occurrence.amount() >= low && occurrence.amount() <= high)
+                .count();
+        if (inBand < MIN_OCCURRENCES) {
+            return;
+        }
+
+        state.setCadence(cadence);
+        state.setAmountLow(low);
+        state.setAmountHigh(high);
+    }
+
+    static boolean isRecurring(MerchantRecurrence state, Expense expense) {
+        RecurrenceCadence cadence = state.getCadence();
+        if (cadence == null || expense.getAmount() < state.getAmountLow() || expense.getAmount() > state.getAmountHigh()) {
+            return false;
+        }
+        return state.getOccurrences().stream()
+                .map(Occurrence::date)
+                .filter(date -> !date.equals(expense.getDate()))
+                .anyMatch(date -> cadence.matches(Math.abs(ChronoUnit.DAYS.between(date, expense.getDate()))));
+    }
+
+    private static <T extends Comparable<T>> T median(List<T> values) {
+        List<T> sorted = values.stream().sorted().toList();
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static boolean trackable(Expense expense) {
+        return expense.getMerchant() != null && !expense.getMerchant().isBlank()
+                && expense.getDate() != null && expense.getAmount() != null;
+    }
+
+    private static String merchantKey(Expense expense) {
+        return expense.getMerchant().trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Rebuilds recurrence state for one user by replaying their expenses in date order.
+     */
+    public void rebuild(String userId) {
+        recurrenceRepository.deleteAllByUserId(userId);
+        replay(Query.query(Criteria.where("userId").is(userId)));
+    }
+
+    // every instance fires this on startup; the lease keeps the replay to one of them
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            jobLock.runExclusively("recurrence-backfill", BACKFILL_LEASE, () -> {
+                if (recurrenceRepository.count() == 0 && mongoTemplate.exists(new Query(), Expense.class)) {
+                    replay(new Query());
+                }
+            });
+        } catch (RuntimeException ex) {
+            LOG.error("Recurrence backfill failed; state will fill in from new writes or a rebuild", ex);
+        }
+    }
+
+    // one pass over (userId, date) order; only the current user's states are held in memory
+    private void replay(Query query) {
+        query.addCriteria(Criteria.where("merchant").ne(null).and("amount").ne(null).and("date").ne(null))
+                .with(Sort.by("userId", "date"));
+        query.fields().include("userId", "merchant", "amount", "date");
+
+        String currentUser = null;
+        Map<String, MerchantRecurrence> states = new HashMap<>();
+        int users = 0;
+
+        try (Stream<Expense> expenses = mongoTemplate.stream(query, Expense.class)) {
+            Iterator<Expense> iterator = expenses.iterator();
+            while (iterator.hasNext()) {
+                Expense expense = iterator.next();
+                if (!trackable(expense)) {
+                    continue;
+                }
+                if (!Objects.equals(currentUser, expense.getUserId())) {
+                    if (currentUser != null) {
+                        replaceStates(currentUser, states);
+                        users++;
+                    }
+                    currentUser = expense.getUserId();
+                    states.clear();
+                }
+                String userId = currentUser;
+                add(states.computeIfAbsent(merchantKey(expense), merchant -> newState(userId, merchant)), expense);
+            }
+        }
+
+        if (currentUser != null) {
+            replaceStates(currentUser, states);
+            users++;
+        }
+        LOG.info("Rebuilt recurrence state for {} users", users);
+    }
+
+    private void replaceStates(String userId, Map<String, MerchantRecurrence> states) {
+        recurrenceRepository.deleteAllByUserId(userId);
+        recurrenceRepository.saveAll(states.values());
+    }
+}
@@ -0,0 +1,51 @@
+package com.aimex.backend.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
+
+public enum TrendGranularity {
+    WEEK,
+    MONTH,
+    QUARTER;
+
+    public static TrendGranularity from(String value) {
+        if (value == null || value.isBlank()) {
+            return MONTH;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unsupported trend granularity: " + value);
+        }
+    }
+
+    public LocalDate startOfPeriod(LocalDate date) {
+        return switch (this) {
+            case WEEK -> date.with(DayOfWeek.MONDAY);
+            case MONTH -> date.withDayOfMonth(1);
+            case QUARTER -> date.withDayOfMonth(1).withMonth(((date.getMonthValue() - 1) / 3) * 3 + 1);
+        };
+    }
+
+    public LocalDate plusPeriods(LocalDate periodStart, long periods) {
+        return switch (this) {
+            case WEEK -> periodStart.plusWeeks(periods);
+            case MONTH -> periodStart.plusMonths(periods);
+            case QUARTER -> periodStart.plusMonths(3 * periods);
+        };
+    }
+
+    // "2025-W42", "2025-10" or "2025-Q4"; the weekly form matches Mongo's "%G-W%V"
+    public String label(LocalDate date) {
+        return switch (this) {
+            case WEEK -> "%d-W%02d".formatted(
+                    date.get(IsoFields.WEEK_BASED_YEAR),
+                    date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case MONTH -> YearMonth.from(date).toString();
+            case QUARTER -> date.getYear() + "-Q" + ((date.getMonthValue() - 1) / 3 + 1);
+        };
+    }
+}
@@ -0,0 +1,6 @@
+package com.aimex.backend.service.dto;
+
+public record BulkImportErrorDTO(
+        int index,          // position of the row in the submitted batch
+        String message
+) { }
@@ -0,0 +1,12 @@
+package com.aimex.backend.service.dto;
+
+import com.aimex.backend.models.Expense;
+
+import java.util.List;
+
+public record BulkImportResultDTO(
+        int received,
+        int imported,
+        List<Expense> expenses,
+        List<BulkImportErrorDTO> errors
+) { }
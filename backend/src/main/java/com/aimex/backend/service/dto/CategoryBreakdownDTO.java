@@ -3,9 +3,11 @@ package com.aimex.backend.service.dto;
 public class CategoryBreakdownDTO {
     public String category;
     public double total;
+    public long count;
 
-    public CategoryBreakdownDTO(String category, double total) {
+    public CategoryBreakdownDTO(String category, double total, long count) {
         this.category = category;
         this.total = total;
+        this.count = count;
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.aimex.backend.service.dto;
+
+import java.util.List;
+
+public record DashboardDTO(MonthlySummaryDTO summary,
+                           List<CategoryBreakdownDTO> categories,
+                           List<TrendPointDTO> trends,
+                           List<BudgetAlertDTO> budgetAlerts) {
+}
@@ -0,0 +1,10 @@
+package com.aimex.backend.service.dto;
+
+import com.aimex.backend.models.Expense;
+
+import java.util.List;
+
+public record ExpensePageDTO(
+        List<Expense> expenses,
+        String nextCursor    // null on the last page
+) { }
@@ -0,0 +1,16 @@
+package com.aimex.backend.service.dto;
+
+import java.time.LocalDate;
+
+// every filter is optional; cursor is the nextCursor of the previous page
+public record ExpensePageRequest(
+        String categoryId,
+        String merchant,
+        Double minAmount,
+        Double maxAmount,
+        LocalDate from,
+        LocalDate to,
+        String cursor,
+        int limit,
+        boolean compact      // omit aiReasoning and description
+) { }
@@ -0,0 +1,13 @@
+package com.aimex.backend.service.dto;
+
+import java.util.List;
+
+// one line of the streaming import response; the last line has done=true
+public record ImportProgressDTO(
+        int chunk,
+        long rowsRead,
+        long rowsImported,
+        List<BulkImportErrorDTO> errors,   // indexes are row numbers within the whole upload
+        boolean done,
+        String failure                     // set when the upload could not be parsed any further
+) { }
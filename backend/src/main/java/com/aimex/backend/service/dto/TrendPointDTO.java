@@ -1,7 +1,7 @@
 package com.aimex.backend.service.dto;
 
 public class TrendPointDTO {
-    public String month; // "2025-10"
+    public String month; // "2025-10", or "2025-W42" / "2025-Q4" for other granularities
     public double total;
 
     public TrendPointDTO(String month, double total) {
@@ -0,0 +1,219 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Category;
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.repository.MerchantCategoryMappingRepository;
+import com.aimex.backend.service.dto.AiCategorySuggestion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AiCategorizationServiceTest {
+
+    private static final String USER_ID = "user-1";
+
+    private StubGeminiServer gemini;
+    private CategoryService categoryService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        gemini = new StubGeminiServer();
+        categoryService = mock(CategoryService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(categoryService.getSnapshot(USER_ID))
+                .thenReturn(CategorySnapshot.of(1, List.of(category("food-id", "Food"), category("travel-id", "Travel"))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        gemini.close();
+    }
+
+    @Test
+    void batchesDistinctMerchantsIntoOnePrompt() {
+        gemini.respondWith(prompt -> """
+                [{"index": 0, "categoryName": "Travel", "confidence": 0.9, "reason": "ride"},
+                 {"index": 1, "categoryName": "Food", "confidence": 0.8, "reason": "delivery"},
+                 {"index": 2, "categoryName": "Food", "confidence": 0.7, "reason": "delivery"}]
+                """);
+
+        List<Optional<AiCategorySuggestion>> results = service(25).suggestCategories(USER_ID, List.of(
+                expense("Uber"), expense("Swiggy"), expense("uber "), expense("Zomato"), expense("UBER")));
+
+        assertThat(gemini.prompts()).hasSize(1);
+        assertThat(gemini.prompts().getFirst()).contains("JSON array");
+        assertThat(results).extracting(result -> result.map(AiCategorySuggestion::categoryId).orElse(null))
+                .containsExactly("travel-id", "food-id", "travel-id", "food-id", "travel-id");
+    }
+
+    @Test
+    void fallsBackToSingleCallOnlyForUnparsedEntries() {
+        gemini.respondWith(prompt -> prompt.contains("JSON array")
+                ? """
+                  [{"index": 0, "categoryName": "Travel", "confidence": 0.9, "reason": "ride"},
+                   {"index": 1, "confidence": 0.8}]
+                  """
+                : """
+                  {"categoryName": "Food", "confidence": 0.6, "reason": "single"}
+                  """);
+
+        List<Optional<AiCategorySuggestion>> results = service(25).suggestCategories(USER_ID, List.of(
+                expense("Uber"), expense("Swiggy")));
+
+        assertThat(gemini.prompts()).hasSize(2);
+        assertThat(gemini.prompts().get(1)).contains("Merchant: Swiggy").doesNotContain("JSON array");
+        assertThat(results.get(0)).map(AiCategorySuggestion::categoryId).contains("travel-id");
+        assertThat(results.get(1)).map(AiCategorySuggestion::reason).contains("single");
+    }
+
+    @Test
+    void splitsPromptsByBatchSizeAndReusesCachedMerchants() {
+        gemini.respondWith(prompt -> """
+                [{"index": 0, "categoryName": "Food"}, {"index": 1, "categoryName": "Food"}]
+                """);
+        AiCategorizationService service = service(2);
+
+        service.suggestCategories(USER_ID, List.of(expense("A"), expense("B"), expense("C")));
+        assertThat(gemini.prompts()).hasSize(2);
+
+        List<Optional<AiCategorySuggestion>> cached = service.suggestCategories(USER_ID, List.of(expense("a"), expense("B")));
+        assertThat(gemini.prompts()).hasSize(2);
+        assertThat(cached).allSatisfy(result -> assertThat(result).map(AiCategorySuggestion::categoryId).contains("food-id"));
+    }
+
+    @Test
+    void fallsBackToUncategorizedWhenGeminiFails() {
+        gemini.injectFailures(503);
+
+        Optional<AiCategorySuggestion> result = service(25).suggestCategory(USER_ID, expense("Uber"));
+
+        assertThat(result).map(AiCategorySuggestion::categoryId).isEmpty();
+        assertThat(result).map(AiCategorySuggestion::categoryName).contains("Uncategorized");
+    }
+
+    @Test
+    void failedBatchFallsBackWithoutPerItemCalls() {
+        gemini.injectFailures(503);
+
+        List<Optional<AiCategorySuggestion>> results = service(25).suggestCategories(USER_ID, List.of(
+                expense("Uber"), expense("Swiggy"), expense("Zomato")));
+
+        assertThat(gemini.prompts()).hasSize(1);
+        assertThat(results).allSatisfy(result ->
+                assertThat(result).map(AiCategorySuggestion::categoryName).contains("Uncategorized"));
+    }
+
+    @Test
+    void unparseableBatchFallsBackWithoutPerItemCalls() {
+        gemini.respondWith(prompt -> "not json");
+
+        List<Optional<AiCategorySuggestion>> results = service(25).suggestCategories(USER_ID, List.of(
+                expense("Uber"), expense("Swiggy")));
+
+        assertThat(gemini.prompts()).hasSize(1);
+        assertThat(results).allSatisfy(result -> assertThat(result).map(AiCategorySuggestion::categoryId).isEmpty());
+    }
+
+    @Test
+    void concurrentLookupsForTheSameMerchantShareOneCall() throws Exception {
+        gemini.injectLatency(Duration.ofMillis(300));
+        gemini.respondWith(prompt -> """
+                {"categoryName": "Travel", "confidence": 0.9, "reason": "ride"}
+                """);
+        AiCategorizationService service = service(25);
+
+        List<CompletableFuture<Optional<AiCategorySuggestion>>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> service.suggestCategory(USER_ID, expense("Uber")),
+                    runnable -> Thread.startVirtualThread(runnable)));
+        }
+
+        for (CompletableFuture<Optional<AiCategorySuggestion>> call : calls) {
+            assertThat(call.get()).map(AiCategorySuggestion::categoryId).contains("travel-id");
+        }
+        assertThat(gemini.prompts()).hasSize(1);
+        assertThat(meterRegistry.counter("aimex.categorization.coalesced").count()).isEqualTo(4);
+    }
+
+    @Test
+    void cachedMappingToADeletedCategoryIsResolvedAgain() {
+        gemini.respondWith(prompt -> prompt.contains("Food")
+                ? """
+                  {"categoryName": "Food", "confidence": 0.9, "reason": "delivery"}
+                  """
+                : """
+                  {"categoryName": "Travel", "confidence": 0.5, "reason": "fallback"}
+                  """);
+        AiCategorizationService service = service(25);
+        assertThat(service.suggestCategory(USER_ID, expense("Swiggy"))).map(AiCategorySuggestion::categoryId).contains("food-id");
+
+        // deleted on another node: this node's cache still holds the old mapping
+        when(categoryService.getSnapshot(USER_ID)).thenReturn(CategorySnapshot.of(2, List.of(category("travel-id", "Travel"))));
+
+        assertThat(service.suggestCategory(USER_ID, expense("Swiggy"))).map(AiCategorySuggestion::categoryId).contains("travel-id");
+        assertThat(gemini.prompts()).hasSize(2);
+    }
+
+    @Test
+    void cachedMappingToARenamedCategoryIsServedWithTheNewName() {
+        gemini.respondWith(prompt -> """
+                {"categoryName": "Food", "confidence": 0.9, "reason": "delivery"}
+                """);
+        AiCategorizationService service = service(25);
+        service.suggestCategory(USER_ID, expense("Swiggy"));
+
+        when(categoryService.getSnapshot(USER_ID)).thenReturn(CategorySnapshot.of(2, List.of(category("food-id", "Groceries"))));
+
+        assertThat(service.suggestCategory(USER_ID, expense("Swiggy"))).map(AiCategorySuggestion::categoryName).contains("Groceries");
+        assertThat(gemini.prompts()).hasSize(1);
+    }
+
+    @Test
+    void skipsExpensesThatAlreadyHaveACategory() {
+        Expense categorized = expense("Uber");
+        categorized.setCategoryId("travel-id");
+
+        List<Optional<AiCategorySuggestion>> results = service(25).suggestCategories(USER_ID, List.of(categorized));
+
+        assertThat(results).containsExactly(Optional.empty());
+        assertThat(gemini.prompts()).isEmpty();
+    }
+
+    private AiCategorizationService service(int batchSize) {
+        MerchantSuggestionCache merchantCache = new MerchantSuggestionCache(
+                DataSize.ofMegabytes(1), Duration.ofMinutes(5), new SimpleMeterRegistry());
+        MerchantKnowledgeBase knowledgeBase = new MerchantKnowledgeBase(mock(MerchantCategoryMappingRepository.class),
+                merchantCache, mock(MongoTemplate.class), meterRegistry, 100, 100, Duration.ofDays(1), 1, Duration.ofHours(1));
+        return new AiCategorizationService(categoryService, knowledgeBase, GeminiClientTest.client(gemini),
+                meterRegistry, batchSize);
+    }
+
+    private static Category category(String id, String name) {
+        Category category = new Category();
+        category.setId(id);
+        category.setUserId(USER_ID);
+        category.setName(name);
+        return category;
+    }
+
+    private static Expense expense(String merchant) {
+        Expense expense = new Expense();
+        expense.setMerchant(merchant);
+        expense.setAmount(250.0);
+        return expense;
+    }
+}
@@ -0,0 +1,200 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.ExpenseRollup;
+import com.aimex.backend.service.dto.CategoryBreakdownDTO;
+import com.aimex.backend.service.dto.MonthlySummaryDTO;
+import com.aimex.backend.service.dto.TrendPointDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The columnar paths must answer exactly what the Mongo paths do. Mongo's side is played by
+ * grouping the same expenses in plain Java, the way the pipelines and rollups group them.
+ */
+class AnalyticsServiceTest {
+
+    private static final String USER_ID = "user-1";
+    private static final List<String> CATEGORIES = List.of("food", "travel", "rent");
+
+    private final List<Expense> expenses = new ArrayList<>();
+    private AnalyticsService columnar;
+    private AnalyticsService mongo;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 2_000; i++) {
+            Expense expense = new Expense();
+            expense.setId(new ObjectId().toHexString());
+            expense.setUserId(USER_ID);
+            expense.setAmount(random.nextInt(1, 50_000) / 100.0);
+            expense.setDate(today.minusDays(random.nextInt(0, 500)));
+            // some rows carry no category, which both paths report as "uncategorized"
+            expense.setCategoryId(random.nextInt(5) == 0 ? null : CATEGORIES.get(random.nextInt(CATEGORIES.size())));
+            expenses.add(expense);
+        }
+
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.count(any(Query.class), eq(Expense.class))).thenAnswer(invocation -> (long) expenses.size());
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenAnswer(invocation -> expenses.stream());
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(ExpenseRollup.class), eq(Document.class)))
+                .thenAnswer(invocation -> results(group(expense -> true, expense -> YearMonth.from(expense.getDate()).toString())));
+
+        ExpenseRollupService rollupService = mock(ExpenseRollupService.class);
+        when(rollupService.getRollups(eq(USER_ID), anyCollection())).thenAnswer(invocation -> {
+            Collection<YearMonth> months = invocation.getArgument(1);
+            return rollups(months);
+        });
+
+        DataVersionService dataVersionService = mock(DataVersionService.class);
+        when(dataVersionService.expenseVersion(USER_ID)).thenReturn(1L);
+
+        columnar = new AnalyticsService(rollupService, store(dataVersionService, true), mongoTemplate);
+        mongo = new AnalyticsService(rollupService, store(dataVersionService, false), mongoTemplate);
+    }
+
+    @Test
+    void monthlySummaryMatches() {
+        MonthlySummaryDTO expected = mongo.getMonthlySummary(USER_ID);
+        MonthlySummaryDTO actual = columnar.getMonthlySummary(USER_ID);
+
+        assertThat(actual.totalSpent).isCloseTo(expected.totalSpent, within(0.001));
+        assertThat(actual.lastMonthTotal).isCloseTo(expected.lastMonthTotal, within(0.001));
+        assertThat(actual.categoryTotals).containsOnlyKeys(expected.categoryTotals.keySet());
+        expected.categoryTotals.forEach((category, total) ->
+                assertThat(actual.categoryTotals.get(category)).isCloseTo(total, within(0.001)));
+    }
+
+    @Test
+    void categoryBreakdownMatchesForARange() {
+        LocalDate from = LocalDate.now().minusDays(90);
+        LocalDate to = LocalDate.now().minusDays(10);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Expense.class), eq(Document.class)))
+                .thenAnswer(invocation -> results(groupWithCounts(
+                        expense -> !expense.getDate().isBefore(from) && !expense.getDate().isAfter(to))));
+
+        assertSameBreakdown(columnar.getCategoryBreakdown(USER_ID, from, to), mongo.getCategoryBreakdown(USER_ID, from, to));
+    }
+
+    @Test
+    void categoryBreakdownMatchesForAllTime() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Expense.class), eq(Document.class)))
+                .thenAnswer(invocation -> results(groupWithCounts(expense -> true)));
+
+        assertSameBreakdown(columnar.getCategoryBreakdown(USER_ID, null, null), mongo.getCategoryBreakdown(USER_ID, null, null));
+    }
+
+    @Test
+    void monthlyAndQuarterlyTrendsMatch() {
+        for (TrendGranularity granularity : List.of(TrendGranularity.MONTH, TrendGranularity.QUARTER)) {
+            assertSameTrends(columnar.getTrends(USER_ID, granularity, 12), mongo.getTrends(USER_ID, granularity, 12));
+        }
+    }
+
+    @Test
+    void weeklyTrendsMatch() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Expense.class), eq(Document.class)))
+                .thenAnswer(invocation -> results(group(expense -> true,
+                        expense -> TrendGranularity.WEEK.label(expense.getDate()))));
+
+        assertSameTrends(columnar.getTrends(USER_ID, TrendGranularity.WEEK, 20), mongo.getTrends(USER_ID, TrendGranularity.WEEK, 20));
+    }
+
+    private static void assertSameBreakdown(List<CategoryBreakdownDTO> actual, List<CategoryBreakdownDTO> expected) {
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).category).isEqualTo(expected.get(i).category);
+            assertThat(actual.get(i).total).isCloseTo(expected.get(i).total, within(0.001));
+            assertThat(actual.get(i).count).isEqualTo(expected.get(i).count);
+        }
+    }
+
+    private static void assertSameTrends(List<TrendPointDTO> actual, List<TrendPointDTO> expected) {
+        assertThat(actual).extracting(point -> point.month)
+                .containsExactlyElementsOf(expected.stream().map(point -> point.month).toList());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).total).isCloseTo(expected.get(i).total, within(0.001));
+        }
+    }
+
+    private ExpenseColumnStore store(DataVersionService dataVersionService, boolean enabled) {
+        return new ExpenseColumnStore(mongoTemplate, dataVersionService, new SimpleMeterRegistry(),
+                enabled, DataSize.ofMegabytes(16), 100_000);
+    }
+
+    private List<ExpenseRollup> rollups(Collection<YearMonth> months) {
+        Map<String, ExpenseRollup> rollups = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            YearMonth month = YearMonth.from(expense.getDate());
+            if (!months.contains(month)) {
+                continue;
+            }
+            ExpenseRollup rollup = rollups.computeIfAbsent(month + ":" + expense.getCategoryId(), id -> {
+                ExpenseRollup created = new ExpenseRollup();
+                created.setUserId(USER_ID);
+                created.setMonthYear(month.toString());
+                created.setCategoryId(expense.getCategoryId());
+                return created;
+            });
+            rollup.setTotal(rollup.getTotal() + expense.getAmount());
+            rollup.setCount(rollup.getCount() + 1);
+        }
+        return List.copyOf(rollups.values());
+    }
+
+    private List<Document> group(Predicate<Expense> filter, Function<Expense, String> key) {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        expenses.stream().filter(filter).forEach(expense -> totals.merge(key.apply(expense), expense.getAmount(), Double::sum));
+        return totals.entrySet().stream()
+                .map(entry -> new Document("_id", entry.getKey()).append("total", entry.getValue()))
+                .toList();
+    }
+
+    // sorted by total descending, like the $sort stage
+    private List<Document> groupWithCounts(Predicate<Expense> filter) {
+        Map<String, Document> groups = new LinkedHashMap<>();
+        expenses.stream().filter(filter).forEach(expense -> {
+            Document group = groups.computeIfAbsent(expense.getCategoryId(),
+                    id -> new Document("_id", id).append("total", 0d).append("count", 0L));
+            group.put("total", group.getDouble("total") + expense.getAmount());
+            group.put("count", group.getLong("count") + 1);
+        });
+        return groups.values().stream()
+                .sorted((a, b) -> Double.compare(b.getDouble("total"), a.getDouble("total")))
+                .toList();
+    }
+
+    private static AggregationResults<Document> results(List<Document> documents) {
+        return new AggregationResults<>(documents, new Document());
+    }
+}
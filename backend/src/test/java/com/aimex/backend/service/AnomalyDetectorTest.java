@@ -0,0 +1,177 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.SpendStats;
+import com.aimex.backend.repository.SpendStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnomalyDetectorTest {
+
+    private static final String USER_ID = "user-1";
+
+    private SpendStatsRepository statsRepository;
+    private AnomalyDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        statsRepository = mock(SpendStatsRepository.class);
+        when(statsRepository.findAllById(anyIterable())).thenReturn(List.of());
+        when(statsRepository.findById(any())).thenReturn(Optional.empty());
+        detector = new AnomalyDetector(statsRepository, mock(MongoTemplate.class), mock(JobLock.class),
+                new SimpleMeterRegistry(), 4.0, 10, 0.1);
+    }
+
+    @Test
+    void addMatchesTheTwoPassMeanAndVariance() {
+        SpendStats stats = new SpendStats();
+        List<Double> amounts = amounts(500);
+        amounts.forEach(amount -> detector.add(stats, amount));
+
+        assertThat(stats.getCount()).isEqualTo(amounts.size());
+        assertThat(stats.getMean()).isCloseTo(mean(amounts), within(1e-9));
+        assertThat(stats.getM2()).isCloseTo(sumOfSquares(amounts), within(1e-6));
+    }
+
+    @Test
+    void removeUndoesAdd() {
+        SpendStats stats = new SpendStats();
+        List<Double> amounts = amounts(200);
+        amounts.forEach(amount -> detector.add(stats, amount));
+
+        List<Double> kept = new ArrayList<>(amounts);
+        for (int i = 0; i < 50; i++) {
+            AnomalyDetector.remove(stats, kept.removeLast());
+        }
+
+        assertThat(stats.getCount()).isEqualTo(kept.size());
+        assertThat(stats.getMean()).isCloseTo(mean(kept), within(1e-9));
+        assertThat(stats.getM2()).isCloseTo(sumOfSquares(kept), within(1e-4));
+    }
+
+    @Test
+    void removingTheLastAmountResetsTheStatistics() {
+        SpendStats stats = new SpendStats();
+        detector.add(stats, 42.0);
+
+        AnomalyDetector.remove(stats, 42.0);
+
+        assertThat(stats.getCount()).isZero();
+        assertThat(stats.getMean()).isZero();
+        assertThat(stats.getM2()).isZero();
+    }
+
+    @Test
+    void scoresZeroUntilThereAreEnoughSamples() {
+        SpendStats stats = new SpendStats();
+        for (int i = 0; i < 9; i++) {
+            detector.add(stats, 10.0 + i);
+        }
+
+        assertThat(detector.score(stats, 10_000)).isZero();
+    }
+
+    @Test
+    void scoresDeviationsAboveTheUsualSpendOnly() {
+        SpendStats stats = new SpendStats();
+        for (int i = 0; i < 20; i++) {
+            detector.add(stats, i % 2 == 0 ? 90.0 : 110.0);
+        }
+        double deviation = Math.sqrt(stats.getM2() / (stats.getCount() - 1));
+
+        assertThat(detector.score(stats, 100 + 5 * deviation)).isCloseTo(5.0, within(0.5));
+        assertThat(detector.score(stats, 10.0)).isZero();
+    }
+
+    @Test
+    void constantAmountsNeedARelativeJumpToScore() {
+        SpendStats stats = new SpendStats();
+        for (int i = 0; i < 20; i++) {
+            detector.add(stats, 15.0);
+        }
+
+        // the spread floor is 10% of the usual amount, so a cent of noise scores almost nothing
+        assertThat(detector.score(stats, 15.01)).isLessThan(0.01);
+        assertThat(detector.score(stats, 30.0)).isCloseTo(10.0, within(1e-9));
+    }
+
+    @Test
+    void flagAllScoresAgainstEarlierRowsWithoutWriting() {
+        List<Expense> rows = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            rows.add(expense(i % 2 == 0 ? 20.0 : 22.0));
+        }
+        Expense spike = expense(500.0);
+        rows.add(spike);
+
+        detector.flagAll(USER_ID, rows);
+
+        assertThat(spike.getIsAnomalous()).isTrue();
+        assertThat(rows.getFirst().getIsAnomalous()).isFalse();
+        verify(statsRepository, never()).save(any());
+    }
+
+    @Test
+    void recordImportedWritesEachStatisticOnce() {
+        List<Expense> imported = List.of(expense(10.0), expense(12.0), expense(14.0));
+
+        detector.recordImported(USER_ID, imported);
+
+        // one category document and one merchant document
+        verify(statsRepository, times(2)).save(any());
+    }
+
+    @Test
+    void flagCreatedOnlyReads() {
+        Expense expense = expense(10.0);
+
+        detector.flagCreated(expense);
+
+        assertThat(expense.getIsAnomalous()).isFalse();
+        verify(statsRepository, never()).save(any());
+    }
+
+    private static List<Double> amounts(int count) {
+        SplittableRandom random = new SplittableRandom(11);
+        List<Double> amounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            amounts.add(random.nextInt(100, 100_000) / 100.0);
+        }
+        return amounts;
+    }
+
+    private static double mean(List<Double> amounts) {
+        return amounts.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+    }
+
+    private static double sumOfSquares(List<Double> amounts) {
+        double mean = mean(amounts);
+        return amounts.stream().mapToDouble(amount -> (amount - mean) * (amount - mean)).sum();
+    }
+
+    private static Expense expense(double amount) {
+        Expense expense = new Expense();
+        expense.setUserId(USER_ID);
+        expense.setCategoryId("food");
+        expense.setMerchant("Cafe");
+        expense.setAmount(amount);
+        return expense;
+    }
+}
@@ -0,0 +1,92 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CategorizationWorkerTest {
+
+    private CategorizationWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        // never started: these tests only exercise the waiter bookkeeping
+        worker = new CategorizationWorker(mock(AiCategorizationService.class), new SimpleMeterRegistry(),
+                1, 10, 3, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    void concurrentPollsShareOneWaiter() {
+        CompletableFuture<Expense> first = worker.awaitCompletion("expense-1");
+        CompletableFuture<Expense> second = worker.awaitCompletion("expense-1");
+
+        worker.notifyCompleted(expense("expense-1"));
+
+        assertThat(first).isSameAs(second);
+        assertThat(first.join().getId()).isEqualTo("expense-1");
+    }
+
+    @Test
+    void theWaiterSurvivesUntilItsLastCallerForgetsIt() {
+        CompletableFuture<Expense> first = worker.awaitCompletion("expense-1");
+        worker.awaitCompletion("expense-1");
+
+        worker.forget("expense-1", first);
+        worker.notifyCompleted(expense("expense-1"));
+
+        assertThat(first).isDone();
+    }
+
+    @Test
+    void aForgottenWaiterIsDropped() {
+        CompletableFuture<Expense> stale = worker.awaitCompletion("expense-1");
+        worker.forget("expense-1", stale);
+
+        CompletableFuture<Expense> fresh = worker.awaitCompletion("expense-1");
+        worker.notifyCompleted(expense("expense-1"));
+
+        assertThat(fresh).isNotSameAs(stale).isDone();
+        assertThat(stale).isNotDone();
+    }
+
+    @Test
+    void forgettingAnOlderFutureLeavesTheCurrentWaiterAlone() {
+        CompletableFuture<Expense> stale = worker.awaitCompletion("expense-1");
+        worker.forget("expense-1", stale);
+        CompletableFuture<Expense> fresh = worker.awaitCompletion("expense-1");
+
+        worker.forget("expense-1", stale);
+        worker.notifyCompleted(expense("expense-1"));
+
+        assertThat(fresh).isDone();
+    }
+
+    @Test
+    void waiterFollowUpsRunOffTheCallingThread() {
+        Thread caller = Thread.currentThread();
+
+        Thread ran = CompletableFuture.supplyAsync(Thread::currentThread, worker.waiterExecutor()).join();
+
+        assertThat(ran).isNotSameAs(caller);
+        assertThat(ran.isVirtual()).isTrue();
+    }
+
+    private static Expense expense(String id) {
+        Expense expense = new Expense();
+        expense.setId(id);
+        return expense;
+    }
+}
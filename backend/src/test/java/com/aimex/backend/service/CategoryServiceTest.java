@@ -0,0 +1,116 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Category;
+import com.aimex.backend.repository.CategoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategoryServiceTest {
+
+    private static final String USER_ID = "user-1";
+
+    private final List<Category> stored = new ArrayList<>();
+    private final AtomicLong version = new AtomicLong(1);
+    private CategoryRepository categoryRepository;
+    private CategoryService categoryService;
+
+    @BeforeEach
+    void setUp() {
+        stored.add(category("food-id", "Food"));
+        categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findByUserId(USER_ID)).thenAnswer(invocation -> List.copyOf(stored));
+        when(categoryRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            List<Category> found = new ArrayList<>();
+            ids.forEach(id -> stored.stream().filter(category -> category.getId().equals(id)).forEach(found::add));
+            return found;
+        });
+        when(categoryRepository.findById(any())).thenAnswer(invocation ->
+                stored.stream().filter(category -> category.getId().equals(invocation.getArgument(0))).findFirst());
+
+        DataVersionService dataVersionService = mock(DataVersionService.class);
+        when(dataVersionService.version(USER_ID)).thenAnswer(invocation -> version.get());
+        when(dataVersionService.versions(anyCollection())).thenAnswer(invocation -> Map.of(USER_ID, version.get()));
+
+        categoryService = new CategoryService(categoryRepository, mock(MerchantKnowledgeBase.class), dataVersionService,
+                new SimpleMeterRegistry(), 1000, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void validatesFromTheSnapshotWithoutAQueryPerWrite() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(categoryService.validateCategory("food-id", USER_ID).getName()).isEqualTo("Food");
+        }
+
+        verify(categoryRepository, times(1)).findByUserId(USER_ID);
+        verify(categoryRepository, never()).findById(any());
+    }
+
+    @Test
+    void aSnapshotMissFallsBackToTheDatabase() {
+        categoryService.getSnapshot(USER_ID);
+        stored.add(category("travel-id", "Travel"));           // created on another node
+
+        assertThat(categoryService.validateCategory("travel-id", USER_ID).getName()).isEqualTo("Travel");
+        assertThat(categoryService.getSnapshot(USER_ID).ids()).contains("travel-id");
+        assertThatThrownBy(() -> categoryService.validateCategory("unknown-id", USER_ID))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void existingIdsOnlyLooksUpIdsMissingFromTheSnapshot() {
+        Set<String> existing = categoryService.existingIds(USER_ID, List.of("food-id", "unknown-id"));
+
+        assertThat(existing).containsExactly("food-id");
+        verify(categoryRepository).findAllById(List.of("unknown-id"));
+    }
+
+    @Test
+    void resyncDropsSnapshotsWhoseVersionMoved() {
+        categoryService.getSnapshot(USER_ID);
+        stored.clear();                                         // deleted on another node
+        version.incrementAndGet();
+
+        categoryService.resync();
+
+        assertThatThrownBy(() -> categoryService.validateCategory("food-id", USER_ID))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void resyncKeepsCurrentSnapshots() {
+        categoryService.getSnapshot(USER_ID);
+
+        categoryService.resync();
+        categoryService.getSnapshot(USER_ID);
+
+        verify(categoryRepository, times(1)).findByUserId(USER_ID);
+    }
+
+    private static Category category(String id, String name) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setUserId(USER_ID);
+        return category;
+    }
+}
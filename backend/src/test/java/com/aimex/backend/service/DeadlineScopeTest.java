@@ -0,0 +1,88 @@
+package com.aimex.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineScopeTest {
+
+    @Test
+    void joinWaitsForEverySubtask() throws Exception {
+        try (DeadlineScope scope = new DeadlineScope(Duration.ofSeconds(5))) {
+            Supplier<Integer> slow = scope.fork(() -> {
+                Thread.sleep(50);
+                return 1;
+            });
+            Supplier<String> fast = scope.fork(() -> "two");
+
+            scope.join();
+
+            assertThat(slow.get()).isEqualTo(1);
+            assertThat(fast.get()).isEqualTo("two");
+        }
+    }
+
+    @Test
+    void theFirstFailureCancelsTheRest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        try (DeadlineScope scope = new DeadlineScope(Duration.ofSeconds(5))) {
+            scope.fork(() -> blockUntilInterrupted(started, interrupted));
+            scope.fork(() -> {
+                started.await();
+                throw new IllegalStateException("boom");
+            });
+
+            assertThatThrownBy(scope::join)
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+
+        // close() waited for the cancelled subtask to exit
+        assertThat(interrupted).isTrue();
+    }
+
+    @Test
+    void theDeadlineCancelsWhateverIsStillRunning() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        long start = System.nanoTime();
+
+        try (DeadlineScope scope = new DeadlineScope(Duration.ofMillis(100))) {
+            scope.fork(() -> "done");
+            scope.fork(() -> blockUntilInterrupted(started, interrupted));
+
+            assertThatThrownBy(scope::join).isInstanceOf(TimeoutException.class);
+        }
+
+        assertThat(interrupted).isTrue();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void aScopeWithNoSubtasksJoinsAtOnce() throws Exception {
+        try (DeadlineScope scope = new DeadlineScope(Duration.ZERO)) {
+            scope.join();
+        }
+    }
+
+    private static Object blockUntilInterrupted(CountDownLatch started, AtomicBoolean interrupted) {
+        started.countDown();
+        try {
+            TimeUnit.MINUTES.sleep(1);
+        } catch (InterruptedException ex) {
+            interrupted.set(true);
+        }
+        return null;
+    }
+}
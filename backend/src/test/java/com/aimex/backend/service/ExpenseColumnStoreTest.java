@@ -0,0 +1,147 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpenseColumnStoreTest {
+
+    private static final String USER_ID = "user-1";
+
+    private MongoTemplate mongoTemplate;
+    private final List<Expense> stored = new ArrayList<>();
+    private final AtomicLong expenseVersion = new AtomicLong(1);
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.count(any(Query.class), eq(Expense.class))).thenAnswer(invocation -> (long) stored.size());
+        when(mongoTemplate.stream(any(Query.class), eq(Expense.class))).thenAnswer(invocation -> List.copyOf(stored).stream());
+        stored.add(expense(10.0));
+        stored.add(expense(20.0));
+    }
+
+    @Test
+    void patchesTheNextVersionInPlace() {
+        ExpenseColumnStore store = store(100);
+        assertThat(size(store)).isEqualTo(2);
+
+        Expense created = write(expense(5.0));
+        store.recordSaved(USER_ID, List.of(created), expenseVersion.get());
+
+        assertThat(size(store)).isEqualTo(3);
+        verify(mongoTemplate, times(1)).stream(any(Query.class), eq(Expense.class));
+    }
+
+    @Test
+    void deletesAreAppliedInPlace() {
+        ExpenseColumnStore store = store(100);
+        size(store);
+
+        Expense deleted = stored.removeFirst();
+        store.recordDeleted(USER_ID, deleted.getId(), expenseVersion.incrementAndGet());
+
+        assertThat(total(store)).isEqualTo(20.0);
+        verify(mongoTemplate, times(1)).stream(any(Query.class), eq(Expense.class));
+    }
+
+    @Test
+    void aVersionGapEvictsAndTheNextReadReloads() {
+        ExpenseColumnStore store = store(100);
+        size(store);
+
+        write(expense(7.0));                         // written on another node, never patched here
+        Expense created = write(expense(5.0));
+        store.recordSaved(USER_ID, List.of(created), expenseVersion.get());
+
+        assertThat(total(store)).isEqualTo(42.0);
+        verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Expense.class));
+    }
+
+    @Test
+    void aWriteAlreadyCoveredByTheLoadIsIgnored() {
+        Expense created = write(expense(5.0));
+        ExpenseColumnStore store = store(100);
+        size(store);
+
+        store.recordSaved(USER_ID, List.of(created), expenseVersion.get());
+
+        assertThat(size(store)).isEqualTo(3);
+        assertThat(total(store)).isEqualTo(35.0);
+    }
+
+    @Test
+    void readsFromAnotherNodesWriteReload() {
+        ExpenseColumnStore store = store(100);
+        size(store);
+
+        write(expense(5.0));
+
+        assertThat(size(store)).isEqualTo(3);
+        verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Expense.class));
+    }
+
+    @Test
+    void usersOverTheRowLimitFallBackToMongo() {
+        ExpenseColumnStore store = store(2);
+        assertThat(store.read(USER_ID, ExpenseColumns::size)).contains(2);
+
+        Expense created = write(expense(5.0));
+        store.recordSaved(USER_ID, List.of(created), expenseVersion.get());
+
+        assertThat(store.read(USER_ID, ExpenseColumns::size)).isEmpty();
+    }
+
+    private ExpenseColumnStore store(int maxRowsPerUser) {
+        DataVersionService dataVersionService = mock(DataVersionService.class);
+        when(dataVersionService.expenseVersion(USER_ID)).thenAnswer(invocation -> expenseVersion.get());
+        return new ExpenseColumnStore(mongoTemplate, dataVersionService, new SimpleMeterRegistry(),
+                true, DataSize.ofMegabytes(16), maxRowsPerUser);
+    }
+
+    // what a writer does before patching: store the row and bump the version
+    private Expense write(Expense expense) {
+        stored.add(expense);
+        expenseVersion.incrementAndGet();
+        return expense;
+    }
+
+    private static int size(ExpenseColumnStore store) {
+        return store.read(USER_ID, ExpenseColumns::size).orElseThrow();
+    }
+
+    private static double total(ExpenseColumnStore store) {
+        return store.read(USER_ID, columns -> {
+            long[] totals = new long[1];
+            columns.sumByPeriod(new int[]{Integer.MIN_VALUE + 1, Integer.MAX_VALUE}, totals);
+            return ExpenseColumns.fromMinorUnits(totals[0]);
+        }).orElseThrow();
+    }
+
+    private static Expense expense(double amount) {
+        Expense expense = new Expense();
+        expense.setId(new ObjectId().toHexString());
+        expense.setUserId(USER_ID);
+        expense.setAmount(amount);
+        expense.setDate(LocalDate.of(2025, 6, 15));
+        return expense;
+    }
+}
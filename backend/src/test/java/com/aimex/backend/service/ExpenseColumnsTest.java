@@ -0,0 +1,131 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpenseColumnsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 15);
+
+    @Test
+    void upsertReplacesTheRowWithTheSameId() {
+        ExpenseColumns columns = new ExpenseColumns(1, 0);
+        String id = new ObjectId().toHexString();
+
+        assertThat(columns.upsert(expense(id, 10.0, "food"))).isTrue();
+        assertThat(columns.upsert(expense(id, 25.5, "travel"))).isTrue();
+
+        assertThat(columns.size()).isEqualTo(1);
+        assertThat(totalsByCategory(columns)).containsExactly(Map.entry("travel", 2550L));
+    }
+
+    @Test
+    void removeOfUnknownOrInvalidIdIsANoOp() {
+        ExpenseColumns columns = new ExpenseColumns(1, 0);
+        columns.upsert(expense(new ObjectId().toHexString(), 10.0, null));
+
+        columns.remove(new ObjectId().toHexString());
+        columns.remove("not-an-object-id");
+        columns.remove(null);
+
+        assertThat(columns.size()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsRowsWithoutAnObjectId() {
+        ExpenseColumns columns = new ExpenseColumns(1, 0);
+
+        assertThat(columns.upsert(expense("legacy-id", 10.0, "food"))).isFalse();
+        assertThat(columns.size()).isZero();
+    }
+
+    @Test
+    void staysAddressableThroughGrowthRemovalsAndReplacements() {
+        ExpenseColumns columns = new ExpenseColumns(1, 0);
+        Map<String, Expense> expected = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(7);
+
+        // enough rows to resize both the columns and the id index several times
+        for (int i = 0; i < 5_000; i++) {
+            String id = new ObjectId().toHexString();
+            Expense expense = expense(id, random.nextInt(1, 100_000) / 100.0, "c" + random.nextInt(5));
+            ids.add(id);
+            expected.put(id, expense);
+            assertThat(columns.append(expense)).isTrue();
+        }
+        for (int i = 0; i < ids.size(); i += 3) {
+            columns.remove(ids.get(i));
+            expected.remove(ids.get(i));
+        }
+        for (int i = 1; i < ids.size(); i += 7) {
+            if (expected.containsKey(ids.get(i))) {
+                Expense replaced = expense(ids.get(i), 1.0, "c9");
+                columns.upsert(replaced);
+                expected.put(ids.get(i), replaced);
+            }
+        }
+        // removing an id twice must not take another row with it
+        columns.remove(ids.get(0));
+
+        assertThat(columns.size()).isEqualTo(expected.size());
+        Map<String, Long> totals = new HashMap<>();
+        expected.values().forEach(expense ->
+                totals.merge(expense.getCategoryId(), ExpenseColumns.minorUnits(expense.getAmount()), Long::sum));
+        assertThat(totalsByCategory(columns)).isEqualTo(totals);
+    }
+
+    @Test
+    void sumsPeriodsByHalfOpenBoundaries() {
+        ExpenseColumns columns = new ExpenseColumns(1, 0);
+        columns.upsert(expense(new ObjectId().toHexString(), 1.0, null, DAY.withDayOfMonth(1)));
+        columns.upsert(expense(new ObjectId().toHexString(), 2.0, null, DAY.withDayOfMonth(30)));
+        columns.upsert(expense(new ObjectId().toHexString(), 4.0, null, DAY.plusMonths(1).withDayOfMonth(1)));
+        columns.upsert(expense(new ObjectId().toHexString(), 8.0, null, null));
+
+        long[] totals = new long[2];
+        columns.sumByPeriod(new int[]{
+                (int) DAY.withDayOfMonth(1).toEpochDay(),
+                (int) DAY.plusMonths(1).withDayOfMonth(1).toEpochDay(),
+                (int) DAY.plusMonths(2).withDayOfMonth(1).toEpochDay()}, totals);
+
+        assertThat(totals).containsExactly(300, 400);
+    }
+
+    private static Map<String, Long> totalsByCategory(ExpenseColumns columns) {
+        long[] totals = new long[columns.categoryCount()];
+        long[] counts = new long[columns.categoryCount()];
+        columns.sumByCategory(Integer.MIN_VALUE + 1, Integer.MAX_VALUE, true, totals, counts);
+
+        Map<String, Long> result = new HashMap<>();
+        for (int ordinal = 0; ordinal < totals.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                result.put(columns.categoryId(ordinal), totals[ordinal]);
+            }
+        }
+        return result;
+    }
+
+    private static Expense expense(String id, double amount, String categoryId) {
+        return expense(id, amount, categoryId, DAY);
+    }
+
+    private static Expense expense(String id, double amount, String categoryId, LocalDate date) {
+        Expense expense = new Expense();
+        expense.setId(id);
+        expense.setAmount(amount);
+        expense.setCategoryId(categoryId);
+        expense.setDate(date);
+        return expense;
+    }
+}
@@ -0,0 +1,98 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.service.dto.BulkImportErrorDTO;
+import com.aimex.backend.service.dto.BulkImportResultDTO;
+import com.aimex.backend.service.dto.ImportProgressDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExpenseImportServiceTest {
+
+    private static final String USER_ID = "user-1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private ExpenseIngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() {
+        ingestionService = mock(ExpenseIngestionService.class);
+        // rejects every row whose merchant starts with "bad", reporting chunk-relative indexes
+        when(ingestionService.ingest(eq(USER_ID), anyList())).thenAnswer(invocation -> {
+            List<Expense> chunk = invocation.getArgument(1);
+            List<BulkImportErrorDTO> errors = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (chunk.get(i).getMerchant().startsWith("bad")) {
+                    errors.add(new BulkImportErrorDTO(i, "rejected"));
+                }
+            }
+            return new BulkImportResultDTO(chunk.size(), chunk.size() - errors.size(), List.of(), errors);
+        });
+    }
+
+    @Test
+    void uploadIndexWithoutParseErrorsIsAnOffset() {
+        assertThat(ExpenseImportService.uploadIndex(500, 7, List.of())).isEqualTo(507);
+    }
+
+    @Test
+    void uploadIndexSkipsRowsThatFailedToParse() {
+        List<BulkImportErrorDTO> parseErrors = List.of(error(10), error(12), error(20));
+
+        assertThat(ExpenseImportService.uploadIndex(10, 0, parseErrors)).isEqualTo(11);
+        assertThat(ExpenseImportService.uploadIndex(10, 1, parseErrors)).isEqualTo(13);
+        assertThat(ExpenseImportService.uploadIndex(10, 5, parseErrors)).isEqualTo(17);
+        assertThat(ExpenseImportService.uploadIndex(10, 8, parseErrors)).isEqualTo(21);
+    }
+
+    @Test
+    void reportsErrorsAtTheirPositionInTheUpload() throws Exception {
+        String upload = String.join("\n",
+                "{\"merchant\": \"ok-0\", \"amount\": 1}",
+                "{\"merchant\": \"unparseable-1\", \"amount\": \"abc\"}",
+                "{\"merchant\": \"bad-2\", \"amount\": 3}",
+                "{\"merchant\": \"ok-3\", \"amount\": 4}",
+                "{\"merchant\": \"bad-4\", \"amount\": 5}");
+
+        List<ImportProgressDTO> progress = importStream(upload, 3);
+
+        assertThat(progress).hasSize(3);
+        assertThat(progress.get(0).errors()).extracting(BulkImportErrorDTO::index).containsExactly(1, 2);
+        assertThat(progress.get(1).errors()).extracting(BulkImportErrorDTO::index).containsExactly(4);
+        ImportProgressDTO last = progress.getLast();
+        assertThat(last.done()).isTrue();
+        assertThat(last.rowsRead()).isEqualTo(5);
+        assertThat(last.rowsImported()).isEqualTo(2);
+    }
+
+    private List<ImportProgressDTO> importStream(String upload, int chunkSize) throws Exception {
+        ExpenseImportService importService = new ExpenseImportService(ingestionService, objectMapper, chunkSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        importService.importStream(USER_ID, new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)),
+                ExpenseImportService.Format.NDJSON, out);
+
+        List<ImportProgressDTO> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readValue(line, ImportProgressDTO.class));
+        }
+        return lines;
+    }
+
+    private static BulkImportErrorDTO error(int index) {
+        return new BulkImportErrorDTO(index, "parse error");
+    }
+}
@@ -0,0 +1,179 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.ExpenseRollup;
+import com.aimex.backend.repository.ExpenseRollupRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpenseRollupServiceTest {
+
+    private static final String USER_ID = "user-1";
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations operations;
+    private DataVersionService dataVersionService;
+    private ExpenseRollupService rollupService;
+
+    private final List<ExpenseRollup> stored = new ArrayList<>();
+    private final List<Document> aggregated = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        operations = mock(BulkOperations.class);
+        dataVersionService = mock(DataVersionService.class);
+        when(mongoTemplate.find(any(Query.class), eq(ExpenseRollup.class))).thenAnswer(invocation -> List.copyOf(stored));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Expense.class), eq(Document.class)))
+                .thenAnswer(invocation -> new AggregationResults<>(List.copyOf(aggregated), new Document()));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ExpenseRollup.class))).thenReturn(operations);
+
+        rollupService = new ExpenseRollupService(mongoTemplate, mock(ExpenseRollupRepository.class),
+                dataVersionService, mock(BudgetAlertStream.class), mock(JobLock.class));
+    }
+
+    @Test
+    void foldDeltasSumsEachBucketAndSkipsUndatedRows() {
+        List<Expense> expenses = List.of(
+                expense("food", 10.0, LocalDate.of(2025, 6, 1)),
+                expense("food", 2.5, LocalDate.of(2025, 6, 30)),
+                expense("food", 4.0, LocalDate.of(2025, 7, 1)),
+                expense(null, null, LocalDate.of(2025, 6, 3)),
+                expense("food", 99.0, null));
+
+        Map<String, ExpenseRollup> deltas = ExpenseRollupService.foldDeltas(expenses);
+
+        assertThat(deltas).containsOnlyKeys(
+                ExpenseRollupService.rollupId(USER_ID, "2025-06", "food"),
+                ExpenseRollupService.rollupId(USER_ID, "2025-07", "food"),
+                ExpenseRollupService.rollupId(USER_ID, "2025-06", null));
+        ExpenseRollup june = deltas.get(ExpenseRollupService.rollupId(USER_ID, "2025-06", "food"));
+        assertThat(june.getTotal()).isCloseTo(12.5, within(1e-9));
+        assertThat(june.getCount()).isEqualTo(2);
+        ExpenseRollup uncategorized = deltas.get(ExpenseRollupService.rollupId(USER_ID, "2025-06", null));
+        assertThat(uncategorized.getTotal()).isZero();
+        assertThat(uncategorized.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildLeavesMatchingBucketsAlone() {
+        stored.add(rollup("2025-06", "food", 12.5, 2));
+        aggregated.add(group("2025-06", "food", 12.5, 2));
+
+        rollupService.rebuild(USER_ID);
+
+        verify(operations, never()).execute();
+        verify(dataVersionService, never()).bump(USER_ID);
+    }
+
+    @Test
+    void rebuildCorrectionsAreConditionalOnTheBucketsRead() {
+        stored.add(rollup("2025-06", "food", 30.0, 3));
+        stored.add(rollup("2025-05", "rent", 800.0, 1));
+        aggregated.add(group("2025-06", "food", 12.5, 2));
+        aggregated.add(group("2025-07", "food", 4.0, 1));
+        when(operations.execute()).thenReturn(BulkWriteResult.acknowledged(1, 1, 1, 1, List.of(), List.of()));
+
+        rollupService.rebuild(USER_ID);
+
+        ArgumentCaptor<Query> updated = ArgumentCaptor.forClass(Query.class);
+        verify(operations).updateOne(updated.capture(), any(Update.class));
+        assertThat(updated.getValue().getQueryObject())
+                .containsEntry("_id", ExpenseRollupService.rollupId(USER_ID, "2025-06", "food"))
+                .containsEntry("total", 30.0)
+                .containsEntry("count", 3L);
+
+        ArgumentCaptor<ExpenseRollup> inserted = ArgumentCaptor.forClass(ExpenseRollup.class);
+        verify(operations).insert(inserted.capture());
+        assertThat(inserted.getValue().getId()).isEqualTo(ExpenseRollupService.rollupId(USER_ID, "2025-07", "food"));
+
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(operations).remove(removed.capture());
+        assertThat(removed.getValue().getQueryObject())
+                .containsEntry("_id", ExpenseRollupService.rollupId(USER_ID, "2025-05", "rent"))
+                .containsEntry("total", 800.0)
+                .containsEntry("count", 1L);
+
+        verify(operations, times(1)).execute();
+        verify(dataVersionService).bump(USER_ID);
+    }
+
+    @Test
+    void rebuildRetriesWhenABucketChangedUnderneathIt() {
+        stored.add(rollup("2025-06", "food", 30.0, 3));
+        aggregated.add(group("2025-06", "food", 12.5, 2));
+        // a live $inc moved the bucket between the read and the correction
+        when(operations.execute()).thenAnswer(invocation -> {
+            stored.set(0, rollup("2025-06", "food", 12.5, 2));
+            return BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of());
+        });
+
+        rollupService.rebuild(USER_ID);
+
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(Expense.class), eq(Document.class));
+        verify(operations, times(1)).execute();
+        verify(dataVersionService, never()).bump(USER_ID);
+    }
+
+    @Test
+    void rebuildGivesUpAfterRepeatedConflicts() {
+        stored.add(rollup("2025-06", "food", 30.0, 3));
+        aggregated.add(group("2025-06", "food", 12.5, 2));
+        when(operations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+
+        rollupService.rebuild(USER_ID);
+
+        verify(operations, times(3)).execute();
+    }
+
+    private static Expense expense(String categoryId, Double amount, LocalDate date) {
+        Expense expense = new Expense();
+        expense.setUserId(USER_ID);
+        expense.setCategoryId(categoryId);
+        expense.setAmount(amount);
+        expense.setDate(date);
+        return expense;
+    }
+
+    private static ExpenseRollup rollup(String monthYear, String categoryId, double total, long count) {
+        ExpenseRollup rollup = new ExpenseRollup();
+        rollup.setId(ExpenseRollupService.rollupId(USER_ID, monthYear, categoryId));
+        rollup.setUserId(USER_ID);
+        rollup.setMonthYear(monthYear);
+        rollup.setCategoryId(categoryId);
+        rollup.setTotal(total);
+        rollup.setCount(count);
+        return rollup;
+    }
+
+    // the shape of one $group result: _id is the (monthYear, categoryId) pair
+    private static Document group(String monthYear, String categoryId, double total, int count) {
+        return new Document("_id", new Document("monthYear", monthYear).append("categoryId", categoryId))
+                .append("total", total)
+                .append("count", count);
+    }
+}
@@ -0,0 +1,144 @@
+package com.aimex.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiClientTest {
+
+    private StubGeminiServer gemini;
+    private MeterRegistry meterRegistry;
+    private TestClock clock;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        gemini = new StubGeminiServer();
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new TestClock();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gemini.close();
+    }
+
+    @Test
+    void failsCallsThatOverrunTheDeadline() {
+        gemini.injectLatency(Duration.ofMillis(500));
+        GeminiClient client = client(gemini, breaker(), Duration.ofMillis(100), 4, Duration.ofMillis(10));
+
+        assertThatThrownBy(() -> client.generateContent("slow"))
+                .isInstanceOf(AiCategorizationException.class);
+        assertThat(meterRegistry.timer("aimex.gemini.calls", "outcome", "timeout").count()).isEqualTo(1);
+    }
+
+    @Test
+    void opensAfterRepeatedFailuresAndStopsCallingGemini() {
+        gemini.injectFailures(503);
+        GeminiCircuitBreaker breaker = breaker();
+        GeminiClient client = client(gemini, breaker, Duration.ofSeconds(2), 4, Duration.ofMillis(10));
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.generateContent("failing")).isInstanceOf(AiCategorizationException.class);
+        }
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.OPEN);
+
+        assertThatThrownBy(() -> client.generateContent("shed"))
+                .isInstanceOf(AiCategorizationException.class)
+                .hasMessageContaining("circuit is open");
+        assertThat(gemini.prompts()).hasSize(4);
+        assertThat(meterRegistry.counter("aimex.gemini.rejections", "reason", "circuit_open").count()).isEqualTo(1);
+    }
+
+    @Test
+    void closesAgainOnceHalfOpenProbesSucceed() {
+        gemini.injectFailures(500);
+        GeminiCircuitBreaker breaker = breaker();
+        GeminiClient client = client(gemini, breaker, Duration.ofSeconds(2), 4, Duration.ofMillis(10));
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> client.generateContent("failing")).isInstanceOf(AiCategorizationException.class);
+        }
+
+        gemini.injectFailures(0);
+        clock.advance(Duration.ofSeconds(31));
+
+        client.generateContent("probe 1");
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.HALF_OPEN);
+        client.generateContent("probe 2");
+        assertThat(breaker.state()).isEqualTo(GeminiCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheConcurrencyLimit() throws Exception {
+        gemini.injectLatency(Duration.ofMillis(300));
+        GeminiClient client = client(gemini, breaker(), Duration.ofSeconds(2), 1, Duration.ofMillis(10));
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> client.generateContent("first"),
+                runnable -> Thread.startVirtualThread(runnable));
+        while (gemini.prompts().isEmpty()) {
+            Thread.sleep(5);
+        }
+
+        assertThatThrownBy(() -> client.generateContent("second"))
+                .isInstanceOf(AiCategorizationException.class)
+                .hasMessageContaining("concurrent");
+        assertThat(first.get()).contains("candidates");
+        assertThat(meterRegistry.counter("aimex.gemini.rejections", "reason", "bulkhead_full").count()).isEqualTo(1);
+    }
+
+    private GeminiCircuitBreaker breaker() {
+        return new GeminiCircuitBreaker(4, 4, 0.5, 1.0, Duration.ofSeconds(5), Duration.ofSeconds(30), 2,
+                clock, meterRegistry);
+    }
+
+    private GeminiClient client(StubGeminiServer server, GeminiCircuitBreaker breaker,
+                                Duration callTimeout, int maxConcurrentCalls, Duration bulkheadWait) {
+        return new GeminiClient(RestClient.builder(), breaker, meterRegistry, "test-key", "gemini-test",
+                server.baseUrl(), Duration.ofSeconds(1), callTimeout, maxConcurrentCalls, bulkheadWait);
+    }
+
+    // generous defaults so tests that are not about resilience never trip it
+    static GeminiClient client(StubGeminiServer server) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(20, 10, 0.5, 1.0, Duration.ofSeconds(5),
+                Duration.ofSeconds(30), 3, Clock.systemUTC(), registry);
+        return new GeminiClient(RestClient.builder(), breaker, registry, "test-key", "gemini-test",
+                server.baseUrl(), Duration.ofSeconds(1), Duration.ofSeconds(5), 8, Duration.ofMillis(100));
+    }
+
+    private static final class TestClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.repository.MerchantCategoryMappingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MerchantKnowledgeBaseTest {
+
+    private MerchantCategoryMappingRepository mappingRepository;
+    private MerchantKnowledgeBase knowledgeBase;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        mappingRepository = mock(MerchantCategoryMappingRepository.class);
+        when(mappingRepository.findByUserIdOrderByLastUsedAtDesc(any(), any(Pageable.class))).thenAnswer(invocation -> {
+            release.await();
+            return List.of();
+        });
+        MerchantSuggestionCache merchantCache = new MerchantSuggestionCache(
+                DataSize.ofMegabytes(1), Duration.ofMinutes(5), new SimpleMeterRegistry());
+        knowledgeBase = new MerchantKnowledgeBase(mappingRepository, merchantCache, mock(MongoTemplate.class),
+                new SimpleMeterRegistry(), 100, 100, Duration.ofDays(1), 1, Duration.ofHours(1));
+    }
+
+    @Test
+    void loginWarmUpsBeyondTheLimitAreSkipped() {
+        knowledgeBase.warmUpInBackground("user-1");
+        knowledgeBase.warmUpInBackground("user-2");
+        release.countDown();
+
+        verify(mappingRepository, timeout(1000)).findByUserIdOrderByLastUsedAtDesc(eq("user-1"), any(Pageable.class));
+        verify(mappingRepository, never()).findByUserIdOrderByLastUsedAtDesc(eq("user-2"), any(Pageable.class));
+    }
+}
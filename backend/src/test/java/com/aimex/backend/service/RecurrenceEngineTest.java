@@ -0,0 +1,181 @@
+package com.aimex.backend.service;
+
+import com.aimex.backend.models.Expense;
+import com.aimex.backend.models.MerchantRecurrence;
+import com.aimex.backend.models.RecurrenceCadence;
+import com.aimex.backend.repository.MerchantRecurrenceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecurrenceEngineTest {
+
+    private static final String USER_ID = "user-1";
+    private static final LocalDate START = LocalDate.of(2025, 1, 10);
+
+    private MerchantRecurrenceRepository recurrenceRepository;
+    private RecurrenceEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        recurrenceRepository = mock(MerchantRecurrenceRepository.class);
+        when(recurrenceRepository.findById(any())).thenReturn(Optional.empty());
+        engine = new RecurrenceEngine(recurrenceRepository, mock(MongoTemplate.class), mock(JobLock.class),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void detectsAMonthlyChargeFromItsThirdOccurrence() {
+        MerchantRecurrence state = RecurrenceEngine.newState(USER_ID, "netflix");
+
+        Expense first = expense("Netflix", 15.0, START);
+        Expense second = expense("Netflix", 15.0, START.plusDays(31));
+        RecurrenceEngine.add(state, first);
+        RecurrenceEngine.add(state, second);
+        assertThat(state.getCadence()).isNull();
+        assertThat(RecurrenceEngine.isRecurring(state, second)).isFalse();
+
+        Expense third = expense("Netflix", 15.5, START.plusDays(59));
+        RecurrenceEngine.add(state, third);
+
+        assertThat(state.getCadence()).isEqualTo(RecurrenceCadence.MONTHLY);
+        assertThat(RecurrenceEngine.isRecurring(state, third)).isTrue();
+    }
+
+    @Test
+    void detectsWeeklyAndAnnualCadences() {
+        assertThat(cadenceOf(7, 7, 8)).isEqualTo(RecurrenceCadence.WEEKLY);
+        assertThat(cadenceOf(365, 366, 365)).isEqualTo(RecurrenceCadence.ANNUAL);
+    }
+
+    @Test
+    void irregularGapsHaveNoCadence() {
+        assertThat(cadenceOf(3, 30, 90, 12)).isNull();
+    }
+
+    @Test
+    void remembersWhenTheCadenceWasFirstDetected() {
+        MerchantRecurrence state = RecurrenceEngine.newState(USER_ID, "netflix");
+        for (int month = 0; month < 3; month++) {
+            RecurrenceEngine.add(state, expense("Netflix", 15.0, START.plusMonths(month)));
+        }
+        assertThat(state.getCadenceSince()).isEqualTo(START.plusMonths(2));
+
+        RecurrenceEngine.add(state, expense("Netflix", 15.0, START.plusMonths(3)));
+        assertThat(state.getCadenceSince()).isEqualTo(START.plusMonths(2));
+
+        RecurrenceEngine.add(state, expense("Netflix", 15.0, START.plusMonths(3).plusDays(2)));
+        RecurrenceEngine.add(state, expense("Netflix", 15.0, START.plusMonths(3).plusDays(4)));
+        RecurrenceEngine.add(state, expense("Netflix", 15.0, START.plusMonths(3).plusDays(6)));
+        RecurrenceEngine.add(state, expense("Netflix", 15.0, START.plusMonths(3).plusDays(8)));
+        assertThat(state.getCadence()).isNull();
+        assertThat(state.getCadenceSince()).isNull();
+    }
+
+    @Test
+    void anAmountOutsideTheBandIsNotRecurring() {
+        MerchantRecurrence state = RecurrenceEngine.newState(USER_ID, "gym");
+        for (int month = 0; month < 4; month++) {
+            RecurrenceEngine.add(state, expense("Gym", 40.0, START.plusMonths(month)));
+        }
+        Expense expensive = expense("Gym", 120.0, START.plusMonths(4));
+        RecurrenceEngine.add(state, expensive);
+
+        assertThat(state.getCadence()).isEqualTo(RecurrenceCadence.MONTHLY);
+        assertThat(RecurrenceEngine.isRecurring(state, expensive)).isFalse();
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentOccurrencesInDateOrder() {
+        MerchantRecurrence state = RecurrenceEngine.newState(USER_ID, "rent");
+        for (int month = RecurrenceEngine.CAPACITY + 2; month > 0; month--) {
+            RecurrenceEngine.add(state, expense("Rent", 900.0, START.plusMonths(month)));
+        }
+
+        List<LocalDate> dates = state.getOccurrences().stream().map(MerchantRecurrence.Occurrence::date).toList();
+        assertThat(dates).hasSize(RecurrenceEngine.CAPACITY).isSorted();
+    }
+
+    @Test
+    void flagCreatedReadsButDoesNotWrite() {
+        MerchantRecurrence stored = RecurrenceEngine.newState(USER_ID, "netflix");
+        RecurrenceEngine.add(stored, expense("Netflix", 15.0, START));
+        RecurrenceEngine.add(stored, expense("Netflix", 15.0, START.plusDays(30)));
+        when(recurrenceRepository.findById(RecurrenceEngine.recurrenceId(USER_ID, "netflix"))).thenReturn(Optional.of(stored));
+
+        assertThat(engine.flagCreated(expense(" NETFLIX ", 15.0, START.plusDays(60)))).isTrue();
+        verify(recurrenceRepository, never()).save(any());
+    }
+
+    @Test
+    void flagUpdatedReplacesTheEditedOccurrence() {
+        MerchantRecurrence stored = RecurrenceEngine.newState(USER_ID, "netflix");
+        Expense before = expense("Netflix", 15.0, START.plusDays(60));
+        RecurrenceEngine.add(stored, expense("Netflix", 15.0, START));
+        RecurrenceEngine.add(stored, expense("Netflix", 15.0, START.plusDays(30)));
+        RecurrenceEngine.add(stored, before);
+        when(recurrenceRepository.findById(RecurrenceEngine.recurrenceId(USER_ID, "netflix"))).thenReturn(Optional.of(stored));
+
+        // moved off-cycle, the charge is no longer one cadence away from any other occurrence
+        assertThat(engine.flagUpdated(before, expense("Netflix", 15.0, START.plusDays(45)))).isFalse();
+        verify(recurrenceRepository, never()).save(any());
+    }
+
+    @Test
+    void recordCreatedSavesTheState() {
+        Expense expense = expense("Netflix", 15.0, START);
+
+        engine.recordCreated(expense);
+
+        ArgumentCaptor<MerchantRecurrence> saved = ArgumentCaptor.forClass(MerchantRecurrence.class);
+        verify(recurrenceRepository).save(saved.capture());
+        assertThat(saved.getValue().getId()).isEqualTo(RecurrenceEngine.recurrenceId(USER_ID, "netflix"));
+        assertThat(saved.getValue().getOccurrences()).hasSize(1);
+    }
+
+    @Test
+    void untrackableExpensesAreNeitherFlaggedNorRecorded() {
+        Expense noMerchant = expense(" ", 15.0, START);
+
+        assertThat(engine.flagCreated(noMerchant)).isFalse();
+        engine.recordCreated(noMerchant);
+
+        verify(recurrenceRepository, never()).save(any());
+    }
+
+    private static RecurrenceCadence cadenceOf(int... gaps) {
+        MerchantRecurrence state = RecurrenceEngine.newState(USER_ID, "merchant");
+        LocalDate date = START;
+        List<Expense> expenses = new ArrayList<>();
+        expenses.add(expense("Merchant", 10.0, date));
+        for (int gap : gaps) {
+            date = date.plusDays(gap);
+            expenses.add(expense("Merchant", 10.0, date));
+        }
+        expenses.forEach(expense -> RecurrenceEngine.add(state, expense));
+        return state.getCadence();
+    }
+
+    private static Expense expense(String merchant, double amount, LocalDate date) {
+        Expense expense = new Expense();
+        expense.setUserId(USER_ID);
+        expense.setMerchant(merchant);
+        expense.setAmount(amount);
+        expense.setDate(date);
+        return expense;
+    }
+}
@@ -0,0 +1,96 @@
+package com.aimex.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the Gemini {@code generateContent} endpoint. The responder maps the prompt
+ * text to the model's answer text, which is wrapped in the usual candidates envelope.
+ * Latency and HTTP error statuses can be injected to exercise timeouts and the circuit breaker.
+ */
+class StubGeminiServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private volatile Function<String, String> responder = prompt -> "{}";
+    private volatile Duration latency = Duration.ZERO;
+    private volatile int failureStatus;
+
+    StubGeminiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1beta";
+    }
+
+    void respondWith(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    void injectLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    // every request answers with this status until cleared with 0
+    void injectFailures(int status) {
+        this.failureStatus = status;
+    }
+
+    List<String> prompts() {
+        return prompts;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String prompt = request.path("contents").path(0).path("parts").path(0).path("text").asText();
+        prompts.add(prompt);
+
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failureStatus != 0) {
+            exchange.sendResponseHeaders(failureStatus, -1);
+            exchange.close();
+            return;
+        }
+
+        Map<String, Object> envelope = Map.of("candidates", List.of(
+                Map.of("content", Map.of("parts", List.of(Map.of("text", responder.apply(prompt)))))
+        ));
+        byte[] body = objectMapper.writeValueAsString(envelope).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}